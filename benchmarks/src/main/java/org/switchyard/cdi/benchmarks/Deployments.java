@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.benchmarks;
+
+import org.switchyard.cdi.Service;
+import org.switchyard.cdi.ServiceDeployer;
+import org.switchyard.cdi.transform.TransformRegistry;
+
+import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.util.AnnotationLiteral;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Synthetic CDI deployments, for running the {@link ServiceDeployer} bean discovery phase
+ * without a container.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+final class Deployments {
+
+    private Deployments() {
+    }
+
+    /**
+     * Create the beans of a deployment of client beans, each with two injection points for
+     * its own service.
+     * @param serviceCount The number of services (and client beans).
+     * @return The deployment beans.
+     */
+    static Set<Bean<?>> clientBeans(int serviceCount) {
+        Field field = getServiceField();
+        Set<Bean<?>> beans = new LinkedHashSet<Bean<?>>();
+
+        for(int i = 0; i < serviceCount; i++) {
+            Set<Annotation> qualifiers = Collections.<Annotation>singleton(new ServiceLiteral("Service" + i));
+            Set<InjectionPoint> injectionPoints = new LinkedHashSet<InjectionPoint>();
+
+            injectionPoints.add(newInjectionPoint(field, qualifiers));
+            injectionPoints.add(newInjectionPoint(field, qualifiers));
+            beans.add(newBean(EchoClientBean.class, injectionPoints));
+        }
+
+        return beans;
+    }
+
+    /**
+     * Run the bean discovery phase of a new {@link ServiceDeployer} on the supplied beans.
+     * @param beans The deployment beans.
+     * @return The number of client proxy beans added by the deployer.
+     */
+    static int deploy(final Set<Bean<?>> beans) {
+        final AtomicInteger addedBeans = new AtomicInteger();
+        final TransformRegistry transformRegistry = new TransformRegistry();
+        final Bean<?> transformRegistryBean = newBean(TransformRegistry.class, Collections.<InjectionPoint>emptySet());
+
+        AfterBeanDiscovery abd = newProxy(AfterBeanDiscovery.class, (proxy, method, args) -> {
+            if(method.getName().equals("addBean")) {
+                addedBeans.incrementAndGet();
+                return null;
+            }
+            throw new UnsupportedOperationException(method.toString());
+        });
+        BeanManager beanManager = newProxy(BeanManager.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getBeans":
+                    return (args[0] == TransformRegistry.class ? Collections.singleton(transformRegistryBean) : beans);
+                case "createCreationalContext":
+                    return null;
+                case "getReference":
+                    return transformRegistry;
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+
+        new ServiceDeployer().afterBeanDiscovery(abd, beanManager);
+
+        return addedBeans.get();
+    }
+
+    private static Bean<?> newBean(Class<?> beanClass, Set<InjectionPoint> injectionPoints) {
+        return newProxy(Bean.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getBeanClass":
+                    return beanClass;
+                case "getInjectionPoints":
+                    return injectionPoints;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return (proxy == args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    private static InjectionPoint newInjectionPoint(Field field, Set<Annotation> qualifiers) {
+        return newProxy(InjectionPoint.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getMember":
+                    return field;
+                case "getQualifiers":
+                    return qualifiers;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return (proxy == args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(Deployments.class.getClassLoader(), new Class[] {type}, handler);
+    }
+
+    private static Field getServiceField() {
+        try {
+            return EchoClientBean.class.getDeclaredField("echoClient");
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unexpected Exception.  EchoClientBean has no 'echoClient' field.", e);
+        }
+    }
+
+    public static class EchoClientBean {
+        @Service
+        private EchoClient echoClient;
+    }
+
+    private static class ServiceLiteral extends AnnotationLiteral<Service> implements Service {
+
+        private final String value;
+
+        private ServiceLiteral(String value) {
+            this.value = value;
+        }
+
+        public String value() {
+            return value;
+        }
+    }
+}
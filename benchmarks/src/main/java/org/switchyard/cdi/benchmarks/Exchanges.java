@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.benchmarks;
+
+import org.switchyard.Exchange;
+import org.switchyard.ExchangeHandler;
+import org.switchyard.ExchangePattern;
+import org.switchyard.HandlerException;
+import org.switchyard.Message;
+import org.switchyard.MessageBuilder;
+import org.switchyard.ServiceDomain;
+import org.switchyard.cdi.BeanServiceMetadata;
+import org.switchyard.cdi.ServiceProxyHandler;
+import org.switchyard.cdi.transform.TransformHandler;
+import org.switchyard.cdi.transform.TransformRegistry;
+import org.switchyard.cdi.transform.factory.BeanInvocationTransformFactory;
+import org.switchyard.cdi.transform.factory.BeanResponseTransformFactory;
+import org.switchyard.internal.DefaultHandlerChain;
+import org.switchyard.internal.ServiceDomains;
+
+import javax.xml.namespace.QName;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark exchange and service setup.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+final class Exchanges {
+
+    private static final AtomicInteger SERVICE_COUNT = new AtomicInteger();
+
+    private Exchanges() {
+    }
+
+    /**
+     * Register a bean service, with the same handler chain the ServiceDeployer would create.
+     * @param serviceBean The service bean.
+     * @return The service QName.
+     */
+    static QName registerService(Object serviceBean) {
+        QName serviceQName = new QName("BenchmarkService" + SERVICE_COUNT.incrementAndGet());
+        BeanServiceMetadata serviceMetadata = new BeanServiceMetadata(serviceBean.getClass());
+        TransformRegistry transformRegistry = new TransformRegistry();
+        DefaultHandlerChain handlerChain = new DefaultHandlerChain();
+
+        handlerChain.addLast("transform", new TransformHandler(new BeanInvocationTransformFactory(serviceMetadata, transformRegistry)));
+        handlerChain.addLast("serviceProxy", new ServiceProxyHandler(serviceBean, serviceMetadata, new BeanResponseTransformFactory(serviceMetadata, transformRegistry)));
+        ServiceDomains.getDomain().registerService(serviceQName, handlerChain);
+
+        return serviceQName;
+    }
+
+    /**
+     * Create an IN_ONLY exchange carrying the supplied operation and content, as it
+     * arrives at the provider.
+     * @param operationName The operation name.
+     * @param content The message content.
+     * @return The exchange.
+     */
+    static Exchange capture(String operationName, Object content) {
+        ServiceDomain domain = ServiceDomains.getDomain();
+        QName serviceQName = new QName("BenchmarkCapture" + SERVICE_COUNT.incrementAndGet());
+        CaptureHandler captureHandler = new CaptureHandler();
+        DefaultHandlerChain handlerChain = new DefaultHandlerChain();
+
+        handlerChain.addLast("capture", captureHandler);
+        domain.registerService(serviceQName, handlerChain);
+
+        Exchange exchange = domain.createExchange(serviceQName, ExchangePattern.IN_ONLY);
+        Message message = MessageBuilder.newInstance().buildMessage();
+
+        BeanServiceMetadata.setOperationName(exchange, operationName);
+        message.setContent(content);
+        exchange.send(message);
+
+        try {
+            if(!captureHandler.received.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Unexpected Exception.  Timed out waiting on benchmark exchange.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Unexpected Exception.  Interrupted waiting on benchmark exchange.", e);
+        }
+
+        return captureHandler.exchange;
+    }
+
+    private static class CaptureHandler implements ExchangeHandler {
+
+        private final CountDownLatch received = new CountDownLatch(1);
+        private volatile Exchange exchange;
+
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            this.exchange = exchange;
+            received.countDown();
+        }
+
+        public void handleFault(Exchange exchange) {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.switchyard.cdi.transform.From;
+import org.switchyard.cdi.transform.PayloadSpec;
+import org.switchyard.cdi.transform.PayloadSpecTransform;
+import org.switchyard.cdi.transform.To;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PayloadSpecTransform#execute(Object)} for a Writer output transform.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadSpecTransformBenchmark {
+
+    private PayloadSpecTransform writerTransform;
+    private Order order;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        writerTransform = new PayloadSpecTransform(PayloadSpec.toPayloadSpec(Order.class), PayloadSpec.valueOf("urn:order:xml"),
+                new OrderTransforms(), OrderTransforms.class.getMethod("writeXML", Order.class, Writer.class));
+        order = new Order("D123", "ABCD", 3);
+    }
+
+    @Benchmark
+    public Object executeWriter() {
+        return writerTransform.execute(order);
+    }
+
+    public static class Order {
+        private final String orderId;
+        private final String productId;
+        private final int quantity;
+
+        public Order(String orderId, String productId, int quantity) {
+            this.orderId = orderId;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+
+    public static class OrderTransforms {
+        public void writeXML(@From Order order, @To("urn:order:xml") Writer writer) throws IOException {
+            writer.write("<order id=\"");
+            writer.write(order.orderId);
+            writer.write("\"><product id=\"");
+            writer.write(order.productId);
+            writer.write("\" quantity=\"");
+            writer.write(Integer.toString(order.quantity));
+            writer.write("\"/></order>");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.switchyard.Exchange;
+import org.switchyard.HandlerException;
+import org.switchyard.cdi.BeanServiceMetadata;
+import org.switchyard.cdi.ServiceProxyHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ServiceProxyHandler} dispatch of an IN_ONLY exchange to the service bean, for single
+ * and multi-arg operations.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceProxyHandlerBenchmark {
+
+    private ServiceProxyHandler handler;
+    private Exchange singleArgExchange;
+    private Exchange multiArgExchange;
+
+    @Setup
+    public void setUp() {
+        handler = new ServiceProxyHandler(new EchoService(), new BeanServiceMetadata(EchoService.class));
+        singleArgExchange = Exchanges.capture("notify", "hello");
+        multiArgExchange = Exchanges.capture("echo", new Object[] {"key", "hello"});
+    }
+
+    @Benchmark
+    public void dispatchSingleArg() throws HandlerException {
+        handler.handleMessage(singleArgExchange);
+    }
+
+    @Benchmark
+    public void dispatchMultiArg() throws HandlerException {
+        handler.handleMessage(multiArgExchange);
+    }
+}
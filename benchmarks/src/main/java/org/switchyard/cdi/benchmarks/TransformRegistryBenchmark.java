@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.switchyard.cdi.transform.From;
+import org.switchyard.cdi.transform.PayloadSpec;
+import org.switchyard.cdi.transform.PayloadSpecTransform;
+import org.switchyard.cdi.transform.To;
+import org.switchyard.cdi.transform.Transform;
+import org.switchyard.cdi.transform.TransformRegistry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransformRegistry} lookup and transform, with 10, 100 and 1,000 registered transforms.
+ * <p/>
+ * The registry holds a chain of {@link From}/{@link To} annotated order transformers, plus
+ * the synthetic transforms making up the registry size.  Lookups cover a direct transform,
+ * a 3 step chain (compiled on first lookup) and a declared spec with no route.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformRegistryBenchmark {
+
+    private static final String V1_XML = "urn:order:v1:xml";
+    private static final String V2_XML = "urn:order:v2:xml";
+
+    @Param({"10", "100", "1000"})
+    private int transformCount;
+
+    private TransformRegistry registry;
+    private PayloadSpec fromSpec;
+    private PayloadSpec toSpec;
+    private PayloadSpec v1XmlSpec;
+    private PayloadSpec v2XmlSpec;
+    private PayloadSpec unreachableSpec;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        Method method = SyntheticTransforms.class.getMethod("transform", String.class);
+        SyntheticTransforms transformer = new SyntheticTransforms();
+        List<PayloadSpecTransform> transforms = new ArrayList<PayloadSpecTransform>(transformCount);
+
+        for(int i = 0; i < transformCount; i++) {
+            transforms.add(new PayloadSpecTransform(PayloadSpec.declare("urn:bench:" + i + ":in"), PayloadSpec.declare("urn:bench:" + i + ":out"), transformer, method));
+        }
+        registry = new TransformRegistry();
+        registry.addTransforms(transforms);
+        registry.addAll(Arrays.asList(new OrderReader(), new OrderUpgrader(), new OrderWriter()));
+
+        // Look up the middle one...
+        fromSpec = PayloadSpec.valueOf("urn:bench:" + (transformCount / 2) + ":in");
+        toSpec = PayloadSpec.valueOf("urn:bench:" + (transformCount / 2) + ":out");
+        v1XmlSpec = PayloadSpec.valueOf(V1_XML);
+        v2XmlSpec = PayloadSpec.valueOf(V2_XML);
+        // Declared, but no route to it...
+        unreachableSpec = PayloadSpec.declare("urn:bench:unreachable");
+    }
+
+    @Benchmark
+    public Transform get() {
+        return registry.get(fromSpec, toSpec);
+    }
+
+    @Benchmark
+    public Transform getChain() {
+        return registry.get(v1XmlSpec, v2XmlSpec);
+    }
+
+    @Benchmark
+    public Transform getUnreachable() {
+        return registry.get(fromSpec, unreachableSpec);
+    }
+
+    @Benchmark
+    public Object transformObject() {
+        return registry.transformObject("hello", fromSpec, toSpec);
+    }
+
+    public static class SyntheticTransforms {
+        public String transform(@From String in) {
+            return in;
+        }
+    }
+
+    public static class Order {
+        private final String orderId;
+
+        public Order(String orderId) {
+            this.orderId = orderId;
+        }
+    }
+
+    public static class OrderV2 {
+        private final String orderId;
+
+        public OrderV2(String orderId) {
+            this.orderId = orderId;
+        }
+    }
+
+    public static class OrderReader {
+        public Order readXML(@From(V1_XML) String orderId) {
+            return new Order(orderId);
+        }
+    }
+
+    public static class OrderUpgrader {
+        public OrderV2 upgrade(@From Order order) {
+            return new OrderV2(order.orderId);
+        }
+    }
+
+    public static class OrderWriter {
+        public void writeXML(@From OrderV2 order, @To(V2_XML) Writer writer) throws IOException {
+            writer.write("<order id=\"");
+            writer.write(order.orderId);
+            writer.write("\"/>");
+        }
+    }
+}
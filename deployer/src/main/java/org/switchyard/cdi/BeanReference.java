@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+
+/**
+ * Reference to a deployed bean.
+ * <p/>
+ * The bean reference is created on the first call to {@link #get()}, unless the
+ * reference is supplied up front.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class BeanReference {
+
+    private final Bean<?> bean;
+    private final BeanManager beanManager;
+    private final Class<?> beanClass;
+    private volatile Object reference;
+
+    public BeanReference(Bean<?> bean, BeanManager beanManager) {
+        this.bean = bean;
+        this.beanManager = beanManager;
+        this.beanClass = bean.getBeanClass();
+    }
+
+    public BeanReference(Object reference) {
+        this.bean = null;
+        this.beanManager = null;
+        this.beanClass = reference.getClass();
+        this.reference = reference;
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * Get the bean reference, creating it if needed.
+     * @return The bean reference.
+     */
+    public Object get() {
+        Object result = reference;
+
+        if(result == null) {
+            synchronized (this) {
+                result = reference;
+                if(result == null) {
+                    CreationalContext creationalContext = beanManager.createCreationalContext(bean);
+                    result = beanManager.getReference(bean, Object.class, creationalContext);
+                    reference = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Has the bean reference been created.
+     * @return True if the reference has been created, otherwise false.
+     */
+    public boolean isCreated() {
+        return (reference != null);
+    }
+}
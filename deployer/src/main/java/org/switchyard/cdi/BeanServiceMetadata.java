@@ -24,10 +24,15 @@ package org.switchyard.cdi;
 
 import org.switchyard.Exchange;
 import org.switchyard.Scope;
+import org.switchyard.cdi.invoke.Invoker;
+import org.switchyard.cdi.invoke.MethodInvoker;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
@@ -37,15 +42,59 @@ public class BeanServiceMetadata {
     // TODO: needs to live somewhere else
     private static final String OPERATION_NAME = "OPERATION_NAME";
 
-    private List<Method> serviceMethods = new ArrayList<Method>();
+    /**
+     * Message content of a zero-arg operation invocation.
+     */
+    public static final Object[] NO_ARGS = new Object[0];
+
+    /**
+     * Operation table, keyed by operation name.  Overloaded operations share a key.
+     */
+    private final Map<String, Operation[]> operationsByName;
+    /**
+     * Operation table, keyed by operation signature e.g. "createOrder(org.acme.OrderRequest)".
+     */
+    private final Map<String, Operation> operationsBySignature;
+    private final Map<String, List<Method>> candidateMethods;
+    private final List<Operation> operations;
 
     public BeanServiceMetadata(Class<? extends Object> serviceClass) {
-        Method[] serviceMethods = serviceClass.getMethods();
-        for(Method serviceMethod : serviceMethods) {
+        Map<String, List<Operation>> operationLists = new HashMap<String, List<Operation>>();
+        Map<String, Operation> operationsBySignature = new HashMap<String, Operation>();
+        List<Operation> operations = new ArrayList<Operation>();
+
+        for(Method serviceMethod : serviceClass.getMethods()) {
             if(serviceMethod.getDeclaringClass() != Object.class) {
-                this.serviceMethods.add(serviceMethod);
+                Operation operation = new Operation(serviceMethod);
+                List<Operation> operationList = operationLists.get(operation.getName());
+
+                if(operationList == null) {
+                    operationList = new ArrayList<Operation>();
+                    operationLists.put(operation.getName(), operationList);
+                }
+                operationList.add(operation);
+                operations.add(operation);
+                operationsBySignature.put(operation.getSignature(), operation);
             }
         }
+
+        Map<String, Operation[]> operationsByName = new HashMap<String, Operation[]>();
+        Map<String, List<Method>> candidateMethods = new HashMap<String, List<Method>>();
+        for(Map.Entry<String, List<Operation>> entry : operationLists.entrySet()) {
+            List<Operation> operationList = entry.getValue();
+            List<Method> methods = new ArrayList<Method>(operationList.size());
+
+            for(Operation operation : operationList) {
+                methods.add(operation.getMethod());
+            }
+            operationsByName.put(entry.getKey(), operationList.toArray(new Operation[operationList.size()]));
+            candidateMethods.put(entry.getKey(), Collections.unmodifiableList(methods));
+        }
+
+        this.operationsByName = operationsByName;
+        this.operationsBySignature = operationsBySignature;
+        this.candidateMethods = candidateMethods;
+        this.operations = Collections.unmodifiableList(operations);
     }
 
     // TODO: needs to live somewhere else
@@ -63,16 +112,16 @@ public class BeanServiceMetadata {
         String operationName = getOperationName(exchange);
 
         if(operationName != null) {
-            List<Method> candidateMethods = getCandidateMethods(operationName);
+            Object content = exchange.getMessage().getContent();
+            Operation operation = resolveOperation(operationName, content);
 
             // Operation name must resolve to exactly one bean method...
-            if(candidateMethods.size() != 1) {
+            if(operation == null) {
                 // TODO: sendFault ??? ...
                 return null;
             }
 
-            Method operationMethod = candidateMethods.get(0);
-            return new Invocation(operationMethod, exchange.getMessage().getContent());
+            return new Invocation(operation, toArgs(operation.getArity() == 0, content));
         } else {
             System.out.println("Operation name not specified on exchange.");
             // TODO: Operation name not specified... sendFault  ...
@@ -81,39 +130,297 @@ public class BeanServiceMetadata {
         return null;
     }
 
+    /**
+     * Get all service operations.
+     * @return An immutable list of the service operations.
+     */
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Get the service methods for the named operation.
+     * @param name The operation name.
+     * @return An immutable list of the service methods matching the operation name.
+     */
     public List<Method> getCandidateMethods(String name) {
-        List<Method> candidateMethods = new ArrayList<Method>();
+        List<Method> methods = candidateMethods.get(name);
+
+        if(methods == null) {
+            return Collections.emptyList();
+        }
+
+        return methods;
+    }
+
+    /**
+     * Get the operation having the specified signature.
+     * @param name The operation name.
+     * @param parameterTypes The operation parameter types.
+     * @return The operation, or null if the service does not define the operation.
+     */
+    public Operation getOperation(String name, Class<?>... parameterTypes) {
+        return operationsBySignature.get(toSignature(name, parameterTypes));
+    }
+
+    /**
+     * Resolve the operation for the supplied operation name and the arity of the
+     * supplied message content.
+     * <p/>
+     * Unlike {@link #resolveOperation(String, Object)}, argument types are not checked,
+     * which means the content can be in its pre-transform form.
+     *
+     * @param exchange The exchange.
+     * @return The operation, or null if the exchange does not resolve to exactly one operation.
+     */
+    public Operation resolveOperation(Exchange exchange) {
+        String operationName = getOperationName(exchange);
+
+        if(operationName == null) {
+            return null;
+        }
+
+        Object content = exchange.getMessage().getContent();
+        if(content instanceof Object[]) {
+            return resolveOperation(operationName, ((Object[]) content).length);
+        }
+        return resolveOperation(operationName, toArgs(operationName, content).length);
+    }
+
+    /**
+     * Resolve the operation for the supplied operation name and arity.
+     * @param name The operation name.
+     * @param arity The number of operation arguments.
+     * @return The operation, or null if the name and arity do not resolve to
+     * exactly one operation.
+     */
+    public Operation resolveOperation(String name, int arity) {
+        Operation[] operations = operationsByName.get(name);
+
+        if(operations == null) {
+            return null;
+        }
+        if(operations.length == 1) {
+            return operations[0];
+        }
 
-        for(Method serviceMethod : serviceMethods) {
-            if(serviceMethod.getName().equals(name)) {
-                candidateMethods.add(serviceMethod);
+        Operation match = null;
+        for(Operation operation : operations) {
+            if(operation.getArity() == arity) {
+                if(match != null) {
+                    // Ambiguous...
+                    return null;
+                }
+                match = operation;
             }
         }
 
-        return candidateMethods;
+        return match;
     }
 
-    public static class Invocation {
-        private Method method;
-        private Object[] args;
+    /**
+     * Resolve the operation for the supplied operation name and message content.
+     * <p/>
+     * Overloaded operations are resolved on the arity and argument types of the
+     * message content.
+     *
+     * @param name The operation name.
+     * @param content The message content.
+     * @return The operation, or null if the name and content do not resolve to
+     * exactly one operation.
+     */
+    public Operation resolveOperation(String name, Object content) {
+        Operation[] operations = operationsByName.get(name);
 
-        private Invocation(Method method, Object arg) {
-            this.method = method;
-            this.args = castArg(arg);
+        if(operations == null) {
+            return null;
+        }
+        if(operations.length == 1) {
+            return operations[0];
+        }
+
+        Object[] args = toArgs(operations, content);
+        Operation match = null;
+        for(Operation operation : operations) {
+            if(operation.accepts(args)) {
+                if(match != null) {
+                    // Ambiguous...
+                    return null;
+                }
+                match = operation;
+            }
+        }
+
+        return match;
+    }
+
+    /**
+     * Get the args carried by the supplied message content.
+     * <p/>
+     * Null content is only treated as zero args if the operation name has a zero-arg overload.
+     * Otherwise it's a single null arg.
+     */
+    private Object[] toArgs(String operationName, Object content) {
+        if(content instanceof Object[]) {
+            return (Object[]) content;
+        }
+
+        Operation[] operations = operationsByName.get(operationName);
+        return toArgs(operations != null && hasZeroArgOperation(operations), content);
+    }
+
+    private static Object[] toArgs(Operation[] operations, Object content) {
+        return toArgs(hasZeroArgOperation(operations), content);
+    }
+
+    private static Object[] toArgs(boolean zeroArgOperation, Object content) {
+        if(content instanceof Object[]) {
+            return (Object[]) content;
+        } else if(content == null && zeroArgOperation) {
+            return NO_ARGS;
         }
+        return new Object[] {content};
+    }
+
+    private static boolean hasZeroArgOperation(Operation[] operations) {
+        for(Operation operation : operations) {
+            if(operation.getArity() == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toSignature(String name, Class<?>[] parameterTypes) {
+        StringBuilder signature = new StringBuilder(name);
 
-        private static Object[] castArg(Object arg) {
-            if(arg.getClass().isArray()) {
-                return (Object[].class).cast(arg);
-            } else {
-                return new Object[] {arg};
+        signature.append('(');
+        for(int i = 0; i < parameterTypes.length; i++) {
+            if(i > 0) {
+                signature.append(',');
             }
+            signature.append(parameterTypes[i].getName());
+        }
+        signature.append(')');
+
+        return signature.toString();
+    }
+
+    /**
+     * Service operation descriptor.
+     * <p/>
+     * Created once per service method when the service is deployed.
+     */
+    public static class Operation {
+
+        private final String name;
+        private final String signature;
+        private final Method method;
+        private final Class<?>[] parameterTypes;
+        private final Invoker invoker;
+
+        private Operation(Method method) {
+            this.name = method.getName();
+            this.method = method;
+            this.parameterTypes = method.getParameterTypes();
+            this.signature = toSignature(name, parameterTypes);
+            this.invoker = new MethodInvoker(method);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSignature() {
+            return signature;
         }
 
         public Method getMethod() {
             return method;
         }
 
+        public Invoker getInvoker() {
+            return invoker;
+        }
+
+        /**
+         * Invoke the operation on the supplied service bean.
+         * @param serviceBean The service bean instance.
+         * @param content The message content carrying the operation argument(s).
+         * @return The operation return value, or null for a void operation.
+         * @throws Exception The exception thrown by the operation implementation.
+         */
+        public Object invoke(Object serviceBean, Object content) throws Exception {
+            if(content instanceof Object[]) {
+                return invoker.invoke(serviceBean, (Object[]) content);
+            } else if(parameterTypes.length == 0) {
+                return invoker.invoke(serviceBean, NO_ARGS);
+            }
+            // Single arg... no args array needed...
+            return invoker.invokeSingle(serviceBean, content);
+        }
+
+        public int getArity() {
+            return parameterTypes.length;
+        }
+
+        public Class<?> getParameterType(int index) {
+            return parameterTypes[index];
+        }
+
+        private boolean accepts(Object[] args) {
+            if(args.length != parameterTypes.length) {
+                return false;
+            }
+            for(int i = 0; i < args.length; i++) {
+                if(args[i] != null && !toObjectType(parameterTypes[i]).isInstance(args[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Class<?> toObjectType(Class<?> type) {
+            if(!type.isPrimitive()) {
+                return type;
+            } else if(type == Integer.TYPE) {
+                return Integer.class;
+            } else if(type == Long.TYPE) {
+                return Long.class;
+            } else if(type == Boolean.TYPE) {
+                return Boolean.class;
+            } else if(type == Double.TYPE) {
+                return Double.class;
+            } else if(type == Float.TYPE) {
+                return Float.class;
+            } else if(type == Short.TYPE) {
+                return Short.class;
+            } else if(type == Byte.TYPE) {
+                return Byte.class;
+            } else if(type == Character.TYPE) {
+                return Character.class;
+            }
+            return type;
+        }
+    }
+
+    public static class Invocation {
+        private Operation operation;
+        private Object[] args;
+
+        private Invocation(Operation operation, Object[] args) {
+            this.operation = operation;
+            this.args = args;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public Method getMethod() {
+            return operation.getMethod();
+        }
+
         public Object[] getArgs() {
             return args;
         }
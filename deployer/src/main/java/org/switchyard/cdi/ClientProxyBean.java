@@ -23,6 +23,8 @@
 package org.switchyard.cdi;
 
 import org.switchyard.*;
+import org.switchyard.cdi.metrics.OperationMetrics;
+import org.switchyard.cdi.metrics.ServiceMetrics;
 import org.switchyard.internal.ServiceDomains;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -39,12 +41,33 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
+ * Client proxy {@link Bean} for a {@link Service} interface.
+ * <p/>
+ * Service operations declaring a {@link Future}, {@link CompletableFuture} or {@link CompletionStage}
+ * return type are invoked asynchronously.  The call returns as soon as the request is sent,
+ * and the returned future is completed when the service response arrives.
+ * <p/>
+ * Void operations are sent as IN_ONLY exchanges, without waiting on (or registering a
+ * handler for) a response.  They are sent on the calling thread, unless marked
+ * {@link Asynchronous} and the proxy has a one-way sender.
+ * <p/>
+ * IN_OUT operations can be given a {@link Timeout}, in which case the exchange deadline
+ * is also set on the exchange (see {@link ExchangeDeadline}).
+ * <p/>
+ * The time callers spend waiting on IN_OUT responses is recorded in the {@link ServiceMetrics}.
+ * Invocations of a co-deployed service bean bound via {@link #bindLocal(BeanReference, BeanServiceMetadata)}
+ * are also recorded there, as they bypass the service's {@link ServiceProxyHandler}.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class ClientProxyBean implements Bean {
@@ -53,10 +76,23 @@ public class ClientProxyBean implements Bean {
     private Class<?> beanClass;
     private Set<Annotation> qualifiers;
     private Object proxyBean;
+    private ServiceMetrics serviceMetrics;
+    private Executor oneWaySender;
+    private ClientProxyInvocationHandler invocationHandler;
 
     public ClientProxyBean(QName serviceQName, Class<?> beanClass, Set<Annotation> qualifiers) {
+        this(serviceQName, beanClass, qualifiers, new ServiceMetrics(serviceQName), null);
+    }
+
+    /**
+     * @param oneWaySender The sender for {@link Asynchronous} one-way operations, or null
+     * to send them on the calling thread.
+     */
+    public ClientProxyBean(QName serviceQName, Class<?> beanClass, Set<Annotation> qualifiers, ServiceMetrics serviceMetrics, Executor oneWaySender) {
         this.serviceQName = serviceQName;
         this.beanClass = beanClass;
+        this.serviceMetrics = serviceMetrics;
+        this.oneWaySender = oneWaySender;
 
         if(qualifiers != null) {
             this.qualifiers = qualifiers;
@@ -66,9 +102,22 @@ public class ClientProxyBean implements Bean {
             this.qualifiers.add(new AnnotationLiteral<Any>() {});
         }
 
+        invocationHandler = new ClientProxyInvocationHandler();
         proxyBean = Proxy.newProxyInstance(ClientProxyBean.class.getClassLoader(),
                                           new Class[] { beanClass },
-                                          new ClientProxyInvocationHandler());
+                                          invocationHandler);
+    }
+
+    /**
+     * Bind the proxy directly to a co-deployed service bean.
+     * <p/>
+     * See {@link LocalInvocation}.
+     *
+     * @param serviceBean The service bean instance.
+     * @param serviceMetadata The service bean metadata.
+     */
+    public void bindLocal(BeanReference serviceBean, BeanServiceMetadata serviceMetadata) {
+        invocationHandler.bindLocal(serviceBean, serviceMetadata);
     }
 
     public QName getServiceQName() {
@@ -125,48 +174,206 @@ public class ClientProxyBean implements Bean {
 
     private class ClientProxyInvocationHandler implements InvocationHandler {
 
+        private final Map<Method, ClientOperation> operations = new HashMap<Method, ClientOperation>();
+        private final ReplyDispatcher replyDispatcher = new ReplyDispatcher();
+        private volatile BeanReference localServiceBean;
+
+        private ClientProxyInvocationHandler() {
+            for(Method method : beanClass.getMethods()) {
+                if(method.getDeclaringClass() != Object.class) {
+                    operations.put(method, new ClientOperation(method, serviceMetrics));
+                }
+            }
+        }
+
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            ServiceDomain domain = ServiceDomains.getDomain();
+            ClientOperation operation = operations.get(method);
 
-            if(method.getReturnType() != null && method.getReturnType() != Void.class) {
-                final BlockingQueue<Exchange> responseQueue = new ArrayBlockingQueue<Exchange>(1);
+            if(operation == null) {
+                // A java.lang.Object method... not a service operation...
+                return invokeObjectMethod(proxy, method, args);
+            }
 
-                ExchangeHandler responseExchangeHandler = new ExchangeHandler() {
-                    public void handleMessage(Exchange exchange) throws HandlerException {
-                        responseQueue.offer(exchange);
-                    }
+            if(operation.localOperation != null) {
+                return invokeLocal(operation, args);
+            }
 
-                    public void handleFault(Exchange exchange) {
-                        // TODO: properly handle fault
-                        responseQueue.offer(exchange);
-                    }
-                };
+            if(operation.pattern == ExchangePattern.IN_OUT) {
+                Exchange exchangeIn = ServiceDomains.getDomain().createExchange(serviceQName, ExchangePattern.IN_OUT, replyDispatcher);
+                ResponseFuture responseFuture = replyDispatcher.expectResponse(exchangeIn, serviceQName, operation.name, operation.timeout);
+
+                if(operation.timeout > 0) {
+                    ExchangeDeadline.setTimeout(exchangeIn, operation.timeout);
+                }
+                try {
+                    Message sendMessage = prepareSend(exchangeIn, args, operation);
+                    exchangeIn.send(sendMessage, exchangeIn.getContext(Scope.MESSAGE));
+                } catch (RuntimeException | Error e) {
+                    // Never sent... release the response slot...
+                    replyDispatcher.discard(exchangeIn);
+                    throw e;
+                }
+
+                if(operation.async) {
+                    return responseFuture;
+                }
+
+                long waitStart = System.nanoTime();
+                try {
+                    return responseFuture.awaitResponse();
+                } catch (InterruptedException e) {
+                    responseFuture.cancel(false);
+                    throw e;
+                } finally {
+                    operation.metrics.clientWaited(System.nanoTime() - waitStart);
+                }
+            } else if(operation.async && oneWaySender != null) {
+                oneWaySender.execute(new OneWaySend(operation, args));
+                return null;
+            } else {
+                sendOneWay(operation, args);
+                return null;
+            }
+        }
 
-                Exchange exchangeIn = domain.createExchange(serviceQName, ExchangePattern.IN_OUT, responseExchangeHandler);
+        private Object invokeLocal(ClientOperation operation, Object[] args) throws Exception {
+            long start = operation.metrics.invocationStarted();
+            boolean failed = true;
 
-                Message sendMessage = prepareSend(exchangeIn, args, method);
-                exchangeIn.send(sendMessage, exchangeIn.getContext(Scope.MESSAGE));
+            try {
+                Object response = operation.localOperation.getInvoker().invoke(localServiceBean.get(), args);
+                failed = false;
+                return response;
+            } finally {
+                operation.metrics.invocationCompleted(start, failed);
+            }
+        }
 
-                Exchange exchangeOut = responseQueue.take();
-                Object responseObject = exchangeOut.getMessage().getContent();
-                
-                return responseObject;
-            } else {
-                Exchange exchange = domain.createExchange(serviceQName, ExchangePattern.IN_ONLY, null);
+        private void bindLocal(BeanReference serviceBean, BeanServiceMetadata serviceMetadata) {
+            localServiceBean = serviceBean;
+            for(Map.Entry<Method, ClientOperation> entry : operations.entrySet()) {
+                Method method = entry.getKey();
+                ClientOperation operation = entry.getValue();
 
-                Message sendMessage = prepareSend(exchange, args, method);
-                exchange.send(sendMessage);
+                // Async and timed operations stay on the exchange path (see LocalInvocation)...
+                if(!operation.async && operation.timeout <= 0) {
+                    BeanServiceMetadata.Operation serviceOperation = serviceMetadata.getOperation(method.getName(), method.getParameterTypes());
 
-                return null;
+                    if(serviceOperation != null && method.getReturnType().isAssignableFrom(serviceOperation.getMethod().getReturnType())) {
+                        operation.localOperation = serviceOperation;
+                    }
+                }
             }
         }
 
-        private Message prepareSend(Exchange exchange, Object[] args, Method method) {
-            BeanServiceMetadata.setOperationName(exchange, method.getName());
+        private void sendOneWay(ClientOperation operation, Object[] args) {
+            Exchange exchange = ServiceDomains.getDomain().createExchange(serviceQName, ExchangePattern.IN_ONLY, null);
+
+            Message sendMessage = prepareSend(exchange, args, operation);
+            exchange.send(sendMessage);
+        }
+
+        private Message prepareSend(Exchange exchange, Object[] args, ClientOperation operation) {
+            BeanServiceMetadata.setOperationName(exchange, operation.name);
             Message inMessage = MessageBuilder.newInstance().buildMessage();
-            inMessage.setContent(args);
+            if(args == null || args.length == 0) {
+                // Zero args... sent explicitly, so as not to be mistaken for a single null arg...
+                inMessage.setContent(BeanServiceMetadata.NO_ARGS);
+            } else if(args.length == 1 && !(args[0] instanceof Object[])) {
+                // Single arg... send it as is...
+                inMessage.setContent(args[0]);
+            } else {
+                inMessage.setContent(args);
+            }
             return inMessage;
         }
 
+        private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+            String methodName = method.getName();
+
+            if(methodName.equals("equals")) {
+                return (proxy == args[0]);
+            } else if(methodName.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if(methodName.equals("toString")) {
+                return "ClientProxy[" + serviceQName + "]";
+            }
+
+            throw new UnsupportedOperationException("Unsupported client proxy method '" + method + "'.");
+        }
+
+        private class OneWaySend implements Runnable {
+
+            private final ClientOperation operation;
+            private final Object[] args;
+
+            private OneWaySend(ClientOperation operation, Object[] args) {
+                this.operation = operation;
+                this.args = args;
+            }
+
+            public void run() {
+                try {
+                    sendOneWay(operation, args);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Client side service operation descriptor.
+     * <p/>
+     * Resolved once per service interface method, when the proxy is created.
+     */
+    static class ClientOperation {
+
+        private final String name;
+        private final ExchangePattern pattern;
+        private final boolean async;
+        private final long timeout;
+        private final OperationMetrics metrics;
+        // Set if the operation is bound to a co-deployed service bean (see LocalInvocation)...
+        private volatile BeanServiceMetadata.Operation localOperation;
+
+        private ClientOperation(Method method, ServiceMetrics serviceMetrics) {
+            this.name = method.getName();
+            this.metrics = serviceMetrics.getOperationMetrics(name);
+            this.timeout = getTimeout(method);
+            this.pattern = getExchangePattern(method);
+            this.async = isAsync(method);
+        }
+
+        static ExchangePattern getExchangePattern(Method method) {
+            Class<?> returnType = method.getReturnType();
+
+            if(returnType == Void.TYPE || returnType == Void.class) {
+                // One-way... no response to wait on...
+                return ExchangePattern.IN_ONLY;
+            }
+            return ExchangePattern.IN_OUT;
+        }
+
+        static boolean isAsync(Method method) {
+            if(getExchangePattern(method) == ExchangePattern.IN_OUT) {
+                Class<?> returnType = method.getReturnType();
+                return (returnType == Future.class || returnType == CompletableFuture.class || returnType == CompletionStage.class);
+            }
+            return (method.isAnnotationPresent(Asynchronous.class) || method.getDeclaringClass().isAnnotationPresent(Asynchronous.class));
+        }
+
+        private static long getTimeout(Method method) {
+            Timeout timeout = method.getAnnotation(Timeout.class);
+
+            if(timeout == null) {
+                timeout = method.getDeclaringClass().getAnnotation(Timeout.class);
+            }
+            if(timeout == null) {
+                return 0;
+            }
+
+            return timeout.unit().toMillis(timeout.value());
+        }
     }
 }
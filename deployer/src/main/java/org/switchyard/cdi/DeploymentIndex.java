@@ -0,0 +1,270 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Build-time deployment index.
+ * <p/>
+ * Reads the {@link #INDEX_RESOURCE} indexes written by the cdi-deployer-processor annotation
+ * processor.  Classes loaded from a classpath root that has an index are looked up in the
+ * index, rather than reflected over.  Classes from any other root return null, in which case
+ * the deployer falls back to reflection.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+final class DeploymentIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeploymentIndex.class);
+
+    static final String INDEX_RESOURCE = "META-INF/switchyard-cdi.idx";
+
+    private static final ClassEntry NOT_LISTED = new ClassEntry();
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    static {
+        Class<?>[] primitives = {Boolean.TYPE, Byte.TYPE, Character.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE};
+        for(Class<?> primitive : primitives) {
+            PRIMITIVES.put(primitive.getName(), primitive);
+        }
+    }
+
+    private final Set<String> roots = new HashSet<String>();
+    private final Map<String, ClassEntry> classes = new HashMap<String, ClassEntry>();
+
+    /**
+     * Load all the indexes visible to the supplied class loader.
+     * @param classLoader The class loader.
+     * @return The deployment index.  Empty if no indexes are found.
+     */
+    static DeploymentIndex load(ClassLoader classLoader) {
+        DeploymentIndex index = new DeploymentIndex();
+
+        try {
+            Enumeration<URL> resources = classLoader.getResources(INDEX_RESOURCE);
+
+            while(resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                Reader reader = new InputStreamReader(resource.openStream(), "UTF-8");
+
+                try {
+                    index.read(toRoot(resource), reader);
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to read deployment index.  Falling back to reflection.", e);
+            return new DeploymentIndex();
+        }
+
+        return index;
+    }
+
+    void read(String root, Reader indexReader) throws IOException {
+        BufferedReader reader = new BufferedReader(indexReader);
+        String record;
+
+        while((record = reader.readLine()) != null) {
+            if(record.startsWith("#") || record.trim().length() == 0) {
+                continue;
+            }
+
+            String[] fields = record.split("\t", -1);
+            String recordType = fields[0];
+
+            if(recordType.equals("service")) {
+                getClassEntry(fields[1]).serviceName = fields[2];
+            } else if(recordType.equals("transformer")) {
+                getClassEntry(fields[1]).transformer = true;
+            } else if(recordType.equals("transform")) {
+                getClassEntry(fields[1]).transformMethods.add(new String[] {fields[2], fields[3]});
+            } else if(recordType.equals("client")) {
+                getClassEntry(fields[1]).clients = true;
+            }
+            // Other records (e.g. "operation") are not needed by the deployer...
+        }
+
+        roots.add(normalizeRoot(root));
+    }
+
+    /**
+     * Get the index entry for the supplied class.
+     * @param type The class.
+     * @return The index entry, or null if the class is not covered by an index.
+     */
+    ClassEntry getEntry(Class<?> type) {
+        if(!isIndexed(type)) {
+            return null;
+        }
+
+        ClassEntry entry = classes.get(type.getName());
+        if(entry == null) {
+            return NOT_LISTED;
+        }
+        return entry;
+    }
+
+    /**
+     * Might instances of the supplied class have {@link Service} client injection points.
+     * @param type The class.
+     * @return False if the class and all its super classes are indexed and have no
+     * client injection points, otherwise true.
+     */
+    boolean mayHaveClientInjectionPoints(Class<?> type) {
+        for(Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            ClassEntry entry = getEntry(current);
+            if(entry == null || entry.clients) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the transform methods of the supplied transformer class.
+     * @param type The transformer class.
+     * @return The transform methods, or null if they are not indexed or can't be resolved.
+     */
+    List<Method> getTransformMethods(Class<?> type) {
+        ClassEntry entry = getEntry(type);
+
+        if(entry == null || !entry.transformer) {
+            return null;
+        }
+
+        List<Method> methods = new ArrayList<Method>(entry.transformMethods.size());
+        try {
+            for(String[] transformMethod : entry.transformMethods) {
+                methods.add(type.getMethod(transformMethod[0], toParameterTypes(transformMethod[1], type.getClassLoader())));
+            }
+        } catch (ClassNotFoundException e) {
+            LOG.warn("Stale deployment index entry for '" + type.getName() + "'.  Falling back to reflection: " + e.getMessage());
+            return null;
+        } catch (NoSuchMethodException e) {
+            LOG.warn("Stale deployment index entry for '" + type.getName() + "'.  Falling back to reflection: " + e.getMessage());
+            return null;
+        }
+
+        return methods;
+    }
+
+    private boolean isIndexed(Class<?> type) {
+        if(roots.isEmpty()) {
+            return false;
+        }
+
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        if(codeSource == null || codeSource.getLocation() == null) {
+            return false;
+        }
+
+        return roots.contains(normalizeRoot(codeSource.getLocation().toExternalForm()));
+    }
+
+    private ClassEntry getClassEntry(String className) {
+        ClassEntry entry = classes.get(className);
+
+        if(entry == null) {
+            entry = new ClassEntry();
+            classes.put(className, entry);
+        }
+
+        return entry;
+    }
+
+    private static Class<?>[] toParameterTypes(String parameterTypes, ClassLoader classLoader) throws ClassNotFoundException {
+        if(parameterTypes.length() == 0) {
+            return new Class<?>[0];
+        }
+
+        String[] typeNames = parameterTypes.split(",");
+        Class<?>[] types = new Class<?>[typeNames.length];
+        for(int i = 0; i < typeNames.length; i++) {
+            types[i] = PRIMITIVES.get(typeNames[i]);
+            if(types[i] == null) {
+                types[i] = Class.forName(typeNames[i], false, classLoader);
+            }
+        }
+
+        return types;
+    }
+
+    private static String toRoot(URL indexResource) {
+        String root = indexResource.toExternalForm();
+
+        root = root.substring(0, root.length() - INDEX_RESOURCE.length());
+        if(root.startsWith("jar:") && root.endsWith("!/")) {
+            // e.g. "jar:file:/a/b.jar!/" -> "file:/a/b.jar"
+            root = root.substring("jar:".length(), root.length() - "!/".length());
+        }
+
+        return root;
+    }
+
+    private static String normalizeRoot(String root) {
+        if(root.endsWith("/")) {
+            return root.substring(0, root.length() - 1);
+        }
+        return root;
+    }
+
+    /**
+     * Index entry for a class.
+     */
+    static final class ClassEntry {
+        private String serviceName;
+        private boolean transformer;
+        private boolean clients;
+        private final List<String[]> transformMethods = new ArrayList<String[]>();
+
+        /**
+         * The {@link Service} name, or null if the class is not a service bean.
+         */
+        String getServiceName() {
+            return serviceName;
+        }
+
+        boolean isTransformer() {
+            return transformer;
+        }
+    }
+}
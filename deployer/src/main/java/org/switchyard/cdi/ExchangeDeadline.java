@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import org.switchyard.Context;
+import org.switchyard.Exchange;
+import org.switchyard.ExchangePattern;
+import org.switchyard.Message;
+import org.switchyard.MessageBuilder;
+import org.switchyard.Scope;
+
+import javax.xml.namespace.QName;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange deadline utilities.
+ * <p/>
+ * The deadline is set on the exchange context by the consumer when the invocation has a
+ * {@link Timeout}.  It allows the provider to skip work on exchanges the consumer has
+ * stopped waiting on.
+ * <p/>
+ * Deadlines are {@link System#nanoTime()} values, so they're not affected by wall clock
+ * adjustments, but are only meaningful within the JVM that set them.  That holds for the
+ * in-VM exchanges between client proxies and service beans.  An exchange forwarded to
+ * another JVM would need to carry the {@link #getRemaining(Exchange) remaining time}
+ * instead, and have its deadline reset from it on arrival.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public final class ExchangeDeadline {
+
+    public static final String DEADLINE_KEY = ExchangeDeadline.class.getName();
+    public static final String TIMEOUT_KEY = ExchangeDeadline.class.getName() + "#timeout";
+    public static final String RESPONDED_KEY = ExchangeDeadline.class.getName() + "#responded";
+
+    private ExchangeDeadline() {
+    }
+
+    /**
+     * Set the exchange deadline.
+     * @param exchange The exchange.
+     * @param timeout The time from now until the deadline, in milliseconds.
+     */
+    public static void setTimeout(Exchange exchange, long timeout) {
+        exchange.getContext(Scope.EXCHANGE).setProperty(DEADLINE_KEY, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+        exchange.getContext(Scope.EXCHANGE).setProperty(TIMEOUT_KEY, timeout);
+    }
+
+    /**
+     * Get the exchange timeout.
+     * @param exchange The exchange.
+     * @return The timeout the deadline was set from in milliseconds, or -1 if the exchange has no deadline.
+     */
+    public static long getTimeout(Exchange exchange) {
+        Long timeout = (Long) exchange.getContext(Scope.EXCHANGE).getProperty(TIMEOUT_KEY);
+
+        if(timeout == null) {
+            return -1;
+        }
+        return timeout;
+    }
+
+    /**
+     * Get the time remaining before the exchange deadline.
+     * @param exchange The exchange.
+     * @return The time remaining in milliseconds (0 if the deadline has passed), or
+     * {@link Long#MAX_VALUE} if the exchange has no deadline.
+     */
+    public static long getRemaining(Exchange exchange) {
+        Long deadline = (Long) exchange.getContext(Scope.EXCHANGE).getProperty(DEADLINE_KEY);
+
+        if(deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    public static boolean isExpired(Exchange exchange) {
+        Long deadline = (Long) exchange.getContext(Scope.EXCHANGE).getProperty(DEADLINE_KEY);
+
+        return (deadline != null && deadline - System.nanoTime() <= 0);
+    }
+
+    /**
+     * Send a {@link ServiceTimeoutException} fault for an exchange that has passed its deadline.
+     * <p/>
+     * Called by the provider side handlers that find the exchange {@link #isExpired(Exchange) expired}.
+     * The fault is only sent for IN_OUT exchanges, by the first handler to find the exchange expired,
+     * and not at all if the provider has already {@link #setResponded(Exchange) responded}.
+     * @param exchange The exchange.
+     * @param serviceQName The service name, or null if not known.
+     * @param operationName The operation name.
+     */
+    public static void sendTimeoutFault(Exchange exchange, QName serviceQName, String operationName) {
+        if(exchange.getPattern() == ExchangePattern.IN_OUT && exchange.getContext(Scope.EXCHANGE).getProperty(RESPONDED_KEY) == null) {
+            Message fault = MessageBuilder.newInstance().buildMessage();
+
+            setResponded(exchange);
+            fault.setContent(new ServiceTimeoutException(serviceQName, operationName, getTimeout(exchange)));
+            exchange.sendFault(fault);
+        }
+    }
+
+    /**
+     * Mark the exchange as responded to by the provider.
+     * <p/>
+     * Only exchanges with a deadline are marked.
+     * @param exchange The exchange.
+     */
+    public static void setResponded(Exchange exchange) {
+        Context context = exchange.getContext(Scope.EXCHANGE);
+
+        if(context.getProperty(DEADLINE_KEY) != null) {
+            context.setProperty(RESPONDED_KEY, Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Local (in-VM) invocation opt-in for a {@link Service} bean.
+ * <p/>
+ * Client proxies deployed alongside the service bean (by the same {@link ServiceDeployer})
+ * are bound directly to the service bean's operation invokers, bypassing the exchange
+ * and handler chain altogether.  Only operations whose client and service signatures
+ * match (i.e. need no transformation) are bound.  Operations returning a
+ * {@link java.util.concurrent.Future}, and {@link Asynchronous} one-way operations,
+ * continue to go through the exchange.
+ * <p/>
+ * Operations with a {@link Timeout} also continue to go through the exchange, because a
+ * direct call can't be abandoned once the timeout expires.
+ * <p/>
+ * Local invocations run on the calling thread, including one-way (void) operations.  Compared
+ * to the exchange path, a local invocation:
+ * <ul>
+ *     <li>runs no handler chain, so no payload transforms.  None are needed, as the bound
+ *     client and service signatures match.</li>
+ *     <li>throws any exception thrown by the service operation straight back to the caller.</li>
+ *     <li>is still recorded in the service operation metrics (invocation count, in-flight,
+ *     errors and latency).</li>
+ * </ul>
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+@Target({ TYPE })
+@Retention(RUNTIME)
+@Documented
+public @interface LocalInvocation {
+}
@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background sender for {@link Asynchronous} one-way client proxy operations.
+ * <p/>
+ * Owned by the {@link ServiceDeployer}, and shut down with the deployment.  Sends are
+ * made on a single sender thread, which is started on demand and stopped once idle.
+ * Pending sends are held on a bounded queue.  When the queue is full, or once the sender
+ * has been shut down, the send is made on the calling thread instead, so sends are
+ * throttled rather than dropped.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+class OneWaySender implements Executor {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final long IDLE_TIMEOUT_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final ThreadPoolExecutor executor;
+
+    OneWaySender() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    OneWaySender(int queueCapacity) {
+        executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "SwitchYard-CDI-OneWaySender");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new RejectedExecutionHandler() {
+                    public void rejectedExecution(Runnable send, ThreadPoolExecutor executor) {
+                        // Queue full, or shut down... send on the calling thread...
+                        send.run();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void execute(Runnable send) {
+        executor.execute(send);
+    }
+
+    /**
+     * Shut down the sender.
+     * <p/>
+     * Waits (for a bounded time) on the sends already queued.
+     */
+    void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
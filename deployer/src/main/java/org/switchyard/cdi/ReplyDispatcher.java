@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import org.switchyard.Exchange;
+import org.switchyard.ExchangeHandler;
+import org.switchyard.HandlerException;
+
+import javax.xml.namespace.QName;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client proxy IN_OUT reply dispatcher.
+ * <p/>
+ * A single dispatcher is the response {@link ExchangeHandler} for all exchanges sent
+ * through a client proxy.  Responses are correlated back to the waiting
+ * {@link ResponseFuture} via the exchange.
+ * <p/>
+ * Pending response slots are released when the response arrives, when the caller
+ * cancels, or when the operation {@link Timeout} expires.  Expired slots are purged
+ * on the next send or response through the dispatcher, so no dispatcher thread is needed.
+ * A slot with no timeout is held until the response arrives, or the caller cancels it.
+ * The client proxy discards the slot if the exchange can't be sent.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+class ReplyDispatcher implements ExchangeHandler {
+
+    private final ConcurrentMap<Exchange, ResponseFuture> pendingResponses = new ConcurrentHashMap<Exchange, ResponseFuture>();
+    private final DelayQueue<Expiry> expiries = new DelayQueue<Expiry>();
+
+    /**
+     * Register a pending response slot for the supplied exchange.
+     * <p/>
+     * Must be called before the exchange is sent.
+     *
+     * @param exchange The IN_OUT exchange.
+     * @param serviceQName The target service name.
+     * @param operationName The target operation name.
+     * @param timeout The operation timeout in milliseconds, or 0 for no timeout.
+     * @return The response slot.
+     */
+    ResponseFuture expectResponse(Exchange exchange, QName serviceQName, String operationName, long timeout) {
+        ResponseFuture responseFuture = new ResponseFuture(this, exchange, serviceQName, operationName, timeout);
+
+        purge();
+        pendingResponses.put(exchange, responseFuture);
+        if(timeout > 0) {
+            expiries.add(new Expiry(exchange, responseFuture.getDeadlineNanos()));
+        }
+
+        return responseFuture;
+    }
+
+    /**
+     * Discard the pending response slot for the supplied exchange.
+     * @param exchange The IN_OUT exchange.
+     */
+    void discard(Exchange exchange) {
+        pendingResponses.remove(exchange);
+    }
+
+    int getPendingCount() {
+        return pendingResponses.size();
+    }
+
+    /**
+     * Purge the expired response slots.
+     */
+    void purge() {
+        Expiry expiry;
+        while((expiry = expiries.poll()) != null) {
+            ResponseFuture responseFuture = pendingResponses.get(expiry.exchange);
+
+            if(responseFuture != null) {
+                responseFuture.expire();
+            }
+        }
+    }
+
+    public void handleMessage(Exchange exchange) throws HandlerException {
+        dispatch(exchange, false);
+    }
+
+    public void handleFault(Exchange exchange) {
+        dispatch(exchange, true);
+    }
+
+    private void dispatch(Exchange exchange, boolean fault) {
+        ResponseFuture responseFuture = pendingResponses.remove(exchange);
+
+        // No slot means the caller is no longer waiting on the response...
+        if(responseFuture != null) {
+            Object content = exchange.getMessage().getContent();
+
+            if(!fault) {
+                responseFuture.complete(content);
+            } else if(content instanceof ServiceTimeoutException) {
+                // The provider skipped the invocation, because the deadline had passed...
+                responseFuture.expire();
+            } else {
+                responseFuture.fault(content);
+            }
+        }
+        purge();
+    }
+
+    private static class Expiry implements Delayed {
+
+        private final Exchange exchange;
+        private final long deadlineNanos;
+
+        private Expiry(Exchange exchange, long deadlineNanos) {
+            this.exchange = exchange;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            long diff = deadlineNanos - ((Expiry) other).deadlineNanos;
+            return (diff < 0 ? -1 : (diff > 0 ? 1 : 0));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import org.switchyard.Exchange;
+
+import javax.xml.namespace.QName;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * IN_OUT response {@link CompletableFuture}.
+ * <p/>
+ * The pending response slot for an exchange sent through a client proxy.  Completed
+ * by the proxy's {@link ReplyDispatcher} when the response arrives.  Synchronous
+ * operations wait on it directly, while operations declaring a {@link Future},
+ * {@link CompletableFuture} or {@link CompletionStage} return type hand it back to the
+ * caller.  Dependent stages that aren't given an executor run on the thread delivering
+ * the response.
+ * <p/>
+ * If the operation has a {@link Timeout}, the slot expires once the timeout has elapsed
+ * since the exchange was sent, and completes exceptionally with a {@link ServiceTimeoutException}.
+ * Any other fault completes it exceptionally with a {@link ServiceFaultException}.
+ * Waiting on the slot ({@link #get()}, {@link #get(long, TimeUnit)}, {@link #join()})
+ * never waits past the operation timeout, even if the caller's own wait is longer.
+ * Otherwise, the expiry is applied when the slot is next checked ({@link #isDone()}),
+ * or purged by the dispatcher.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+class ResponseFuture extends CompletableFuture<Object> {
+
+    private final ReplyDispatcher replyDispatcher;
+    private final Exchange exchange;
+    private final QName serviceQName;
+    private final String operationName;
+    private final long timeout;
+    private final long deadlineNanos;
+
+    ResponseFuture(ReplyDispatcher replyDispatcher, Exchange exchange, QName serviceQName, String operationName, long timeout) {
+        this.replyDispatcher = replyDispatcher;
+        this.exchange = exchange;
+        this.serviceQName = serviceQName;
+        this.operationName = operationName;
+        this.timeout = timeout;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Get the operation timeout.
+     * @return The operation timeout in milliseconds, or 0 for no timeout.
+     */
+    long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Get the operation deadline, relative to {@link System#nanoTime()}.
+     * @return The operation deadline.  Meaningless if the operation has no timeout.
+     */
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * Expire the response slot.
+     * @return True if the slot was expired, or false if it was already done.
+     */
+    boolean expire() {
+        if(!completeExceptionally(new ServiceTimeoutException(serviceQName, operationName, timeout))) {
+            return false;
+        }
+        replyDispatcher.discard(exchange);
+        return true;
+    }
+
+    /**
+     * Complete the response slot with a {@link ServiceFaultException}.
+     * @param fault The fault message content.
+     * @return True if the slot was faulted, or false if it was already done.
+     */
+    boolean fault(Object fault) {
+        return completeExceptionally(new ServiceFaultException(serviceQName, operationName, fault));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        // Can't abort the exchange... just stop waiting on it.  Only the first cancel succeeds...
+        if(!completeExceptionally(new CancellationException())) {
+            return false;
+        }
+        replyDispatcher.discard(exchange);
+        return true;
+    }
+
+    @Override
+    public boolean isDone() {
+        if(!super.isDone() && isPastDeadline()) {
+            expire();
+        }
+        return super.isDone();
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+        if(timeout > 0 && !isDone()) {
+            try {
+                return super.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Completed between timing out and expiring, if this fails...
+                expire();
+            }
+        }
+        return super.get();
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long waitNanos = unit.toNanos(timeout);
+
+        if(this.timeout > 0 && deadlineNanos - System.nanoTime() <= waitNanos) {
+            // The operation times out first...
+            return get();
+        }
+        return super.get(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Object join() {
+        boolean interrupted = false;
+
+        // Uninterruptible, like CompletableFuture.join...
+        while(timeout > 0 && !isDone()) {
+            try {
+                get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                // Reported by join...
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return super.join();
+    }
+
+    /**
+     * Wait on the response, honoring the operation {@link Timeout}.
+     * @return The response.
+     * @throws InterruptedException Interrupted while waiting.
+     * @throws ServiceTimeoutException The operation timeout elapsed before the response arrived.
+     */
+    Object awaitResponse() throws InterruptedException {
+        try {
+            return get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unexpected Exception.  Service invocation failed.", cause);
+        }
+    }
+
+    private boolean isPastDeadline() {
+        return (timeout > 0 && deadlineNanos - System.nanoTime() <= 0);
+    }
+}
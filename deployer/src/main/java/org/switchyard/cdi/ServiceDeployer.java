@@ -22,10 +22,14 @@
 
 package org.switchyard.cdi;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.switchyard.cdi.metrics.MetricsRegistry;
 import org.switchyard.cdi.transform.TransformHandler;
 import org.switchyard.cdi.transform.TransformRegistry;
 import org.switchyard.cdi.transform.TransformSpecifier;
 import org.switchyard.cdi.transform.factory.BeanInvocationTransformFactory;
+import org.switchyard.cdi.transform.factory.BeanResponseTransformFactory;
 import org.switchyard.internal.DefaultHandlerChain;
 import org.switchyard.internal.ServiceDomains;
 
@@ -37,11 +41,22 @@ import javax.enterprise.inject.spi.*;
 import javax.enterprise.util.AnnotationLiteral;
 import javax.xml.namespace.QName;
 import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
@@ -49,72 +64,283 @@ import java.util.Set;
 @ApplicationScoped
 public class ServiceDeployer implements Extension {
 
-    private List<ClientProxyBean> createdProxyBeans = new ArrayList<ClientProxyBean>();
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceDeployer.class);
+
+    /**
+     * Minimum number of beans per analysis thread.  Below this, the analysis runs on the deploying thread.
+     */
+    private static final int PARALLEL_ANALYSIS_THRESHOLD = 100;
+
+    private Map<ClientProxyKey, ClientProxyBean> createdProxyBeans = new LinkedHashMap<ClientProxyKey, ClientProxyBean>();
+    private Map<QName, LocalService> localServices = new HashMap<QName, LocalService>();
+    private List<BeanInvocationTransformFactory> transformFactories = new ArrayList<BeanInvocationTransformFactory>();
+    private DeploymentIndex deploymentIndex;
+    private List<BeanReference> prewarmReferences = new ArrayList<BeanReference>();
+    private MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private OneWaySender oneWaySender = new OneWaySender();
+    private int maxAnalysisThreads = Runtime.getRuntime().availableProcessors();
 
     public void afterBeanDiscovery(@Observes AfterBeanDiscovery abd, BeanManager beanManager) {
         TransformRegistry transformRegistry = getTransformRegistry(beanManager);
-        Set<Bean<?>> allBeans = beanManager.getBeans(Object.class, new AnnotationLiteral<Any>() {});
+        transformRegistry.setMetricsRegistry(metricsRegistry);
+        deploymentIndex = DeploymentIndex.load(getClassLoader());
+        List<Bean<?>> allBeans = new ArrayList<Bean<?>>(beanManager.getBeans(Object.class, new AnnotationLiteral<Any>() {}));
 
-        for(Bean<?> bean : allBeans) {
-            Set<InjectionPoint> injectionPoints = bean.getInjectionPoints();
+        // Analysis phase... inspect the bean classes, methods and annotations.  No side effects,
+        // so it can run in parallel...
+        long start = System.currentTimeMillis();
+        List<BeanAnalysis> analyses = analyze(allBeans);
+        long analyzed = System.currentTimeMillis();
 
+        // Registration phase... serial...
+        // Keyed on the BeanReference (identity equality), in bean order, so registration is deterministic...
+        Map<Object, List<Method>> transformers = new LinkedHashMap<Object, List<Method>>();
+        for(BeanAnalysis analysis : analyses) {
             // Create proxies for the relevant injection points...
-            for(InjectionPoint injectionPoint : injectionPoints) {
-                for(Annotation qualifier : injectionPoint.getQualifiers()) {
-                    if(Service.class.isAssignableFrom(qualifier.annotationType())) {
+            for(ClientProxyPoint clientProxyPoint : analysis.clientProxyPoints) {
+                addInjectableClientProxyBean(clientProxyPoint.field, clientProxyPoint.serviceAnnotation, clientProxyPoint.qualifiers, beanManager, abd);
+            }
+
+            // Create Service Proxy ExchangeHandlers and register them as Services, for all @Service beans...
+            if(analysis.serviceQName != null) {
+                Bean<?> bean = analysis.bean;
+                Class<?> serviceType = bean.getBeanClass();
+
+                registerESBServiceProxyHandler(toBeanReference(analysis, beanManager), serviceType, analysis.serviceQName, analysis.serviceMetadata, transformRegistry);
+                if(serviceType.isInterface()) {
+                    addClientProxyBean(analysis.serviceQName, serviceType, null, abd);
+                }
+            }
+
+            // Collect the transformers...
+            if(analysis.transformer) {
+                transformers.put(toBeanReference(analysis, beanManager), analysis.transformMethods);
+            }
+        }
+
+        // Add the transform methods to the TransformRegistry in one batch...
+        transformRegistry.addAll(transformers);
+        long registered = System.currentTimeMillis();
+
+        bindTransforms();
+        bindLocalClientProxyBeans();
+        long bound = System.currentTimeMillis();
+
+        if(LOG.isInfoEnabled()) {
+            LOG.info("Deployed " + allBeans.size() + " beans.  Analysis: " + (analyzed - start) + "ms, registration: " + (registered - analyzed) + "ms, binding: " + (bound - registered) + "ms.");
+        }
+    }
+
+    public void afterDeploymentValidation(@Observes AfterDeploymentValidation adv) {
+        // Expose the service metrics over JMX...
+        metricsRegistry.register(ManagementFactory.getPlatformMBeanServer());
+
+        if(prewarmReferences.isEmpty()) {
+            return;
+        }
+
+        final List<BeanReference> references = new ArrayList<BeanReference>(prewarmReferences);
+        Thread prewarmThread = new Thread(new Runnable() {
+            public void run() {
+                for(BeanReference reference : references) {
+                    try {
+                        reference.get();
+                    } catch (RuntimeException e) {
+                        // Will be retried (and fail) on first use...
+                        LOG.warn("Failed to pre-warm bean '" + reference.getBeanClass().getName() + "'.", e);
+                    }
+                }
+            }
+        }, "SwitchYard-CDI-Prewarm");
+
+        prewarmThread.setDaemon(true);
+        prewarmThread.start();
+        prewarmReferences.clear();
+    }
+
+    public void beforeShutdown(@Observes BeforeShutdown bs) {
+        metricsRegistry.unregister();
+        oneWaySender.shutdown();
+    }
+
+    /**
+     * Set the maximum number of bean analysis threads.
+     * @param maxAnalysisThreads The maximum number of analysis threads.  1 analyzes on the deploying thread.
+     */
+    void setMaxAnalysisThreads(int maxAnalysisThreads) {
+        this.maxAnalysisThreads = maxAnalysisThreads;
+    }
+
+    private List<BeanAnalysis> analyze(final List<Bean<?>> beans) {
+        int threads = Math.min(maxAnalysisThreads, beans.size() / PARALLEL_ANALYSIS_THRESHOLD);
+
+        if(threads < 2) {
+            return analyze(beans, 0, beans.size());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SwitchYard-CDI-Deployer-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            // Split into more chunks than threads, so a slow chunk doesn't hold up the whole phase...
+            int chunkSize = Math.max(1, beans.size() / (threads * 4));
+            List<Future<List<BeanAnalysis>>> chunks = new ArrayList<Future<List<BeanAnalysis>>>();
+
+            for(int from = 0; from < beans.size(); from += chunkSize) {
+                final int chunkFrom = from;
+                final int chunkTo = Math.min(from + chunkSize, beans.size());
+
+                chunks.add(executor.submit(new Callable<List<BeanAnalysis>>() {
+                    public List<BeanAnalysis> call() {
+                        return analyze(beans, chunkFrom, chunkTo);
+                    }
+                }));
+            }
+
+            // Gather in bean order, so registration is deterministic...
+            List<BeanAnalysis> analyses = new ArrayList<BeanAnalysis>(beans.size());
+            for(Future<List<BeanAnalysis>> chunk : chunks) {
+                analyses.addAll(chunk.get());
+            }
+
+            return analyses;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Unexpected Exception.  Interrupted while analyzing beans.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unexpected Exception.  Failed to analyze beans.", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<BeanAnalysis> analyze(List<Bean<?>> beans, int from, int to) {
+        List<BeanAnalysis> analyses = new ArrayList<BeanAnalysis>(to - from);
+
+        for(int i = from; i < to; i++) {
+            BeanAnalysis analysis = analyze(beans.get(i));
+            if(analysis != null) {
+                analyses.add(analysis);
+            }
+        }
+
+        return analyses;
+    }
+
+    private BeanAnalysis analyze(Bean<?> bean) {
+        BeanAnalysis analysis = new BeanAnalysis(bean);
+        Class<?> beanClass = bean.getBeanClass();
+        DeploymentIndex.ClassEntry indexEntry = deploymentIndex.getEntry(beanClass);
+
+        // The index tells us if there's no need to check the injection points...
+        if(indexEntry == null || deploymentIndex.mayHaveClientInjectionPoints(beanClass)) {
+            for(InjectionPoint injectionPoint : bean.getInjectionPoints()) {
+                // Query the qualifiers once...
+                Set<Annotation> qualifiers = injectionPoint.getQualifiers();
+
+                for(Annotation qualifier : qualifiers) {
+                    if(qualifier instanceof Service) {
                         Member member = injectionPoint.getMember();
                         if(member instanceof Field) {
                             Class<?> memberType = ((Field) member).getType();
                             if(memberType.isInterface()) {
-                                addInjectableClientProxyBean((Field) member, (Service) qualifier, injectionPoint.getQualifiers(), beanManager, abd);
+                                analysis.clientProxyPoints.add(new ClientProxyPoint((Field) member, (Service) qualifier, qualifiers));
                             }
                         }
                     }
                 }
             }
+        }
 
-            // Create Service Proxy ExchangeHandlers and register them as Services, for all @Service beans...
+        if(indexEntry != null) {
+            if(indexEntry.getServiceName() != null) {
+                analysis.serviceQName = toServiceQName(indexEntry.getServiceName(), beanClass.getSimpleName());
+            }
+            if(indexEntry.isTransformer()) {
+                analysis.transformer = true;
+                analysis.transformMethods = deploymentIndex.getTransformMethods(beanClass);
+            }
+        } else {
             if(isServiceBean(bean)) {
-                Class<?> serviceType = bean.getBeanClass();
-                Service serviceAnnotation = serviceType.getAnnotation(Service.class);
-
-                registerESBServiceProxyHandler(bean, serviceType, serviceAnnotation, beanManager, transformRegistry);
-                if(serviceType.isInterface()) {
-                    addInjectableClientProxyBean(bean, serviceType, serviceAnnotation, beanManager, abd);
-                }
+                analysis.serviceQName = toServiceQName(beanClass.getAnnotation(Service.class), beanClass.getSimpleName());
             }
+            analysis.transformer = isTransformerBean(bean);
+        }
 
-            // Add the transform methods to the TransformRegistry...
-            if(isTransformerBean(bean)) {
-                CreationalContext creationalContext = beanManager.createCreationalContext(bean);
-                Object transformBeanInst =  beanManager.getReference(bean, Object.class, creationalContext);
+        if(analysis.serviceQName != null) {
+            analysis.serviceMetadata = new BeanServiceMetadata(beanClass);
+        }
+        if(analysis.serviceQName != null || analysis.transformer) {
+            analysis.lazy = beanClass.getAnnotation(Lazy.class);
+        }
 
-                transformRegistry.add(transformBeanInst);
-            }
+        if(analysis.clientProxyPoints.isEmpty() && analysis.serviceQName == null && !analysis.transformer) {
+            // Nothing to register...
+            return null;
         }
+
+        return analysis;
     }
 
-    private void registerESBServiceProxyHandler(Bean<?> serviceBean, Class<?> serviceType, Service serviceAnnotation, BeanManager beanManager, TransformRegistry transformRegistry) {
-        QName serviceQName = toServiceQName(serviceAnnotation, serviceType.getSimpleName());
-        CreationalContext creationalContext = beanManager.createCreationalContext(serviceBean);
+    private void bindTransforms() {
+        // All transformers are registered by now...
+        for(BeanInvocationTransformFactory transformFactory : transformFactories) {
+            transformFactory.bind();
+        }
+    }
 
-        // Register the Service in the ESB domain...
-        Object beanRef = beanManager.getReference(serviceBean, Object.class, creationalContext);
+    private void bindLocalClientProxyBeans() {
+        for(ClientProxyBean clientProxyBean : createdProxyBeans.values()) {
+            LocalService localService = localServices.get(clientProxyBean.getServiceQName());
 
+            if(localService != null) {
+                clientProxyBean.bindLocal(localService.serviceBean, localService.serviceMetadata);
+            }
+        }
+    }
+
+    private void registerESBServiceProxyHandler(BeanReference beanRef, Class<?> serviceType, QName serviceQName, BeanServiceMetadata serviceMetadata, TransformRegistry transformRegistry) {
+        // Register the Service in the ESB domain...
         // TODO: Should the TransformHandler be one of the system handlers?
         DefaultHandlerChain handlerChain = new DefaultHandlerChain();
-        BeanServiceMetadata serviceMetadata = new BeanServiceMetadata(serviceType);
 
-        handlerChain.addLast("transform", new TransformHandler(new BeanInvocationTransformFactory(serviceMetadata, transformRegistry)));
-        handlerChain.addLast("serviceProxy", new ServiceProxyHandler(beanRef, serviceMetadata));
+        BeanInvocationTransformFactory transformFactory = new BeanInvocationTransformFactory(serviceMetadata, transformRegistry);
+        transformFactories.add(transformFactory);
+
+        handlerChain.addLast("transform", new TransformHandler(transformFactory, serviceQName));
+        handlerChain.addLast("serviceProxy", new ServiceProxyHandler(beanRef, serviceMetadata, new BeanResponseTransformFactory(serviceMetadata, transformRegistry), metricsRegistry.getServiceMetrics(serviceQName)));
         
         ServiceDomains.getDomain().registerService(serviceQName, handlerChain);
+
+        if(serviceType.isAnnotationPresent(LocalInvocation.class)) {
+            localServices.put(serviceQName, new LocalService(beanRef, serviceMetadata));
+        }
     }
 
-    private void addInjectableClientProxyBean(Bean<?> serviceBean, Class<?> serviceType, Service serviceAnnotation, BeanManager beanManager, AfterBeanDiscovery abd) {
-        QName serviceQName = toServiceQName(serviceAnnotation, serviceBean.getBeanClass().getSimpleName());
+    private BeanReference toBeanReference(BeanAnalysis analysis, BeanManager beanManager) {
+        BeanReference beanRef = new BeanReference(analysis.bean, beanManager);
 
-        addClientProxyBean(serviceQName, serviceType, null, abd);
+        if(analysis.lazy == null) {
+            // Not lazy... create it now...
+            beanRef.get();
+        } else if(analysis.lazy.prewarm()) {
+            prewarmReferences.add(beanRef);
+        }
+
+        return beanRef;
     }
 
     private void addInjectableClientProxyBean(Field injectionPointField, Service serviceAnnotation, Set<Annotation> qualifiers, BeanManager beanManager, AfterBeanDiscovery abd) {
@@ -124,17 +350,29 @@ public class ServiceDeployer implements Extension {
     }
 
     private void addClientProxyBean(QName serviceQName, Class<?> beanClass, Set<Annotation> qualifiers, AfterBeanDiscovery abd) {
+        ClientProxyBean clientProxyBean = createClientProxyBean(serviceQName, beanClass, qualifiers);
+
+        if(clientProxyBean != null) {
+            abd.addBean(clientProxyBean);
+        }
+    }
+
+    /**
+     * Create the client proxy bean for the supplied service interface.
+     * @return The new proxy bean, or null if a proxy bean already exists for the service interface.
+     */
+    ClientProxyBean createClientProxyBean(QName serviceQName, Class<?> beanClass, Set<Annotation> qualifiers) {
+        ClientProxyKey key = new ClientProxyKey(serviceQName, beanClass);
+
         // Check do we already have a proxy for this service interface...
-        for(ClientProxyBean clientProxyBean : createdProxyBeans) {
-            if(serviceQName.equals(clientProxyBean.getServiceQName()) && beanClass == clientProxyBean.getBeanClass()) {
-                // ignore... we already have a proxy ...
-                return;
-            }
+        if(createdProxyBeans.containsKey(key)) {
+            // ignore... we already have a proxy ...
+            return null;
         }
 
-        ClientProxyBean clientProxyBean = new ClientProxyBean(serviceQName, beanClass, qualifiers);
-        createdProxyBeans.add(clientProxyBean);
-        abd.addBean(clientProxyBean);
+        ClientProxyBean clientProxyBean = new ClientProxyBean(serviceQName, beanClass, qualifiers, metricsRegistry.getServiceMetrics(serviceQName), oneWaySender);
+        createdProxyBeans.put(key, clientProxyBean);
+        return clientProxyBean;
     }
 
     private boolean isServiceBean(Bean<?> bean) {
@@ -146,7 +384,10 @@ public class ServiceDeployer implements Extension {
     }
 
     private QName toServiceQName(Service serviceAnnotation, String defaultName) {
-        String serviceName = serviceAnnotation.value();
+        return toServiceQName(serviceAnnotation.value(), defaultName);
+    }
+
+    private QName toServiceQName(String serviceName, String defaultName) {
 
         // TODO: Could use the bean class package name as the namespace component of the Service QName
         if(!serviceName.equals("")) {
@@ -156,6 +397,15 @@ public class ServiceDeployer implements Extension {
         }
     }
 
+    private ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        if(classLoader == null) {
+            classLoader = ServiceDeployer.class.getClassLoader();
+        }
+        return classLoader;
+    }
+
     private TransformRegistry getTransformRegistry(BeanManager beanManager) {
         Set<Bean<?>> transformRegistryBeans = beanManager.getBeans(TransformRegistry.class);
 
@@ -167,4 +417,65 @@ public class ServiceDeployer implements Extension {
 
         throw new IllegalStateException("Unexpected Exception.  Failed to get a reference to the TransformRegistry bean.");        
     }
+
+    private static class BeanAnalysis {
+        private final Bean<?> bean;
+        private final List<ClientProxyPoint> clientProxyPoints = new ArrayList<ClientProxyPoint>();
+        private QName serviceQName;
+        private BeanServiceMetadata serviceMetadata;
+        private boolean transformer;
+        private List<Method> transformMethods;
+        private Lazy lazy;
+
+        private BeanAnalysis(Bean<?> bean) {
+            this.bean = bean;
+        }
+    }
+
+    private static class ClientProxyPoint {
+        private final Field field;
+        private final Service serviceAnnotation;
+        private final Set<Annotation> qualifiers;
+
+        private ClientProxyPoint(Field field, Service serviceAnnotation, Set<Annotation> qualifiers) {
+            this.field = field;
+            this.serviceAnnotation = serviceAnnotation;
+            this.qualifiers = qualifiers;
+        }
+    }
+
+    private static final class ClientProxyKey {
+        private final QName serviceQName;
+        private final Class<?> beanClass;
+
+        private ClientProxyKey(QName serviceQName, Class<?> beanClass) {
+            this.serviceQName = serviceQName;
+            this.beanClass = beanClass;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof ClientProxyKey)) {
+                return false;
+            }
+
+            ClientProxyKey other = (ClientProxyKey) obj;
+            return serviceQName.equals(other.serviceQName) && beanClass == other.beanClass;
+        }
+
+        @Override
+        public int hashCode() {
+            return serviceQName.hashCode() * 31 + beanClass.hashCode();
+        }
+    }
+
+    private static class LocalService {
+        private BeanReference serviceBean;
+        private BeanServiceMetadata serviceMetadata;
+
+        private LocalService(BeanReference serviceBean, BeanServiceMetadata serviceMetadata) {
+            this.serviceBean = serviceBean;
+            this.serviceMetadata = serviceMetadata;
+        }
+    }
 }
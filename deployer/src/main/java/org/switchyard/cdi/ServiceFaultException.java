@@ -0,0 +1,65 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Service fault exception.
+ * <p/>
+ * Thrown by a client proxy when the service responds with a fault.  If the fault
+ * content is an exception, it's the cause of this exception.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class ServiceFaultException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final QName serviceQName;
+    private final String operationName;
+    private final transient Object fault;
+
+    public ServiceFaultException(QName serviceQName, String operationName, Object fault) {
+        super("Operation '" + operationName + "' on service '" + serviceQName + "' failed: " + fault, (fault instanceof Throwable ? (Throwable) fault : null));
+        this.serviceQName = serviceQName;
+        this.operationName = operationName;
+        this.fault = fault;
+    }
+
+    public QName getServiceQName() {
+        return serviceQName;
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * Get the fault message content.
+     * @return The fault content.
+     */
+    public Object getFault() {
+        return fault;
+    }
+}
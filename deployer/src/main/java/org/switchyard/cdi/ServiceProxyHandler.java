@@ -22,26 +22,61 @@
 
 package org.switchyard.cdi;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.switchyard.*;
-import org.switchyard.cdi.transform.PayloadSpec;
-import org.switchyard.cdi.transform.TransformRegistry;
+import org.switchyard.cdi.metrics.OperationMetrics;
+import org.switchyard.cdi.metrics.ServiceMetrics;
+import org.switchyard.cdi.transform.Transform;
+import org.switchyard.cdi.transform.factory.BeanResponseTransformFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import javax.xml.namespace.QName;
 
 /**
+ * Provider side {@link ExchangeHandler} for a {@link Service} bean.
+ * <p/>
+ * Invokes the service operation and sends the response, for IN_OUT exchanges.  IN_OUT
+ * exchanges that reach the handler after their {@link ExchangeDeadline} are not
+ * invoked.  A {@link ServiceTimeoutException} fault is sent back instead, as it is
+ * in place of a response that's ready after the deadline.
+ * <p/>
+ * An operation that fails, or can't be resolved, on an IN_OUT exchange is answered with a
+ * fault containing the exception, so the consumer is never left waiting on a response.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class ServiceProxyHandler implements ExchangeHandler {
 
-    private Object serviceBean;
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceProxyHandler.class);
+
+    private BeanReference serviceBean;
     private BeanServiceMetadata serviceMetadata;
+    private BeanResponseTransformFactory responseTransformFactory;
+    private ServiceMetrics serviceMetrics;
 
     public ServiceProxyHandler(Object serviceBean, BeanServiceMetadata serviceMetadata) {
+        this(serviceBean, serviceMetadata, null);
+    }
+
+    public ServiceProxyHandler(Object serviceBean, BeanServiceMetadata serviceMetadata, BeanResponseTransformFactory responseTransformFactory) {
+        this(new BeanReference(serviceBean), serviceMetadata, responseTransformFactory);
+    }
+
+    public ServiceProxyHandler(BeanReference serviceBean, BeanServiceMetadata serviceMetadata, BeanResponseTransformFactory responseTransformFactory) {
+        this(serviceBean, serviceMetadata, responseTransformFactory, null);
+    }
+
+    public ServiceProxyHandler(BeanReference serviceBean, BeanServiceMetadata serviceMetadata, BeanResponseTransformFactory responseTransformFactory, ServiceMetrics serviceMetrics) {
         this.serviceBean = serviceBean;
         this.serviceMetadata = serviceMetadata;
+        this.responseTransformFactory = responseTransformFactory;
+        this.serviceMetrics = serviceMetrics;
+        if(serviceMetrics != null) {
+            // Create the operation metrics up front...
+            for(BeanServiceMetadata.Operation operation : serviceMetadata.getOperations()) {
+                serviceMetrics.getOperationMetrics(operation.getName());
+            }
+        }
     }
 
     public void handleMessage(Exchange exchange) throws HandlerException {
@@ -53,29 +88,80 @@ public class ServiceProxyHandler implements ExchangeHandler {
     }
 
     private void handle(Exchange exchange) {
-        BeanServiceMetadata.Invocation invocation = serviceMetadata.getInvocation(exchange);
+        String operationName = BeanServiceMetadata.getOperationName(exchange);
+
+        if(operationName == null) {
+            sendFault(exchange, new IllegalArgumentException("Operation name not specified on exchange."));
+            return;
+        }
+
+        // The consumer has stopped waiting on the response... skip the invocation and tell it why...
+        if(ExchangeDeadline.isExpired(exchange)) {
+            ExchangeDeadline.sendTimeoutFault(exchange, getServiceQName(), operationName);
+            return;
+        }
+
+        Object content = exchange.getMessage().getContent();
+        BeanServiceMetadata.Operation operation = serviceMetadata.resolveOperation(operationName, content);
+
+        if(operation != null) {
+            OperationMetrics operationMetrics = (serviceMetrics != null ? serviceMetrics.getOperationMetrics(operation.getName()) : null);
+            long start = (operationMetrics != null ? operationMetrics.invocationStarted() : 0L);
+            boolean failed = true;
 
-        if(invocation != null) {
             try {
-                if(exchange.getPattern() == ExchangePattern.IN_OUT) {
-                    Object responseObject = invocation.getMethod().invoke(serviceBean, invocation.getArgs());
-                    Message message = MessageBuilder.newInstance().buildMessage();
+                Object responseObject = operation.invoke(serviceBean.get(), content);
 
-                    message.setContent(responseObject);
-                    exchange.send(message);
-                } else {
-                    invocation.getMethod().invoke(serviceBean, invocation.getArgs());
+                if(exchange.getPattern() == ExchangePattern.IN_OUT) {
+                    if(ExchangeDeadline.isExpired(exchange)) {
+                        // The deadline passed during the invocation... the timeout fault replaces the late response...
+                        ExchangeDeadline.sendTimeoutFault(exchange, getServiceQName(), operationName);
+                    } else {
+                        sendResponse(exchange, operation, responseObject);
+                    }
                 }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-                // TODO: sendFault...
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
-                // TODO: sendFault...
+                failed = false;
+            } catch (Exception e) {
+                sendFault(exchange, e);
+            } finally {
+                if(operationMetrics != null) {
+                    operationMetrics.invocationCompleted(start, failed);
+                }
+            }
+        } else {
+            sendFault(exchange, new IllegalArgumentException("Unable to resolve operation '" + operationName + "' for the exchange payload."));
+        }
+    }
+
+    private void sendResponse(Exchange exchange, BeanServiceMetadata.Operation operation, Object responseObject) {
+        Message message = MessageBuilder.newInstance().buildMessage();
+
+        if(responseObject != null && responseTransformFactory != null) {
+            // Transform the OUT leg to the format requested by the consumer...
+            Transform transform = responseTransformFactory.getTransform(operation, exchange);
+            if(transform != null) {
+                responseObject = transform.execute(responseObject);
             }
+        }
+
+        message.setContent(responseObject);
+        ExchangeDeadline.setResponded(exchange);
+        exchange.send(message);
+    }
+
+    private QName getServiceQName() {
+        return (serviceMetrics != null ? serviceMetrics.getServiceQName() : null);
+    }
+
+    private void sendFault(Exchange exchange, Exception exception) {
+        if(exchange.getPattern() == ExchangePattern.IN_OUT) {
+            Message fault = MessageBuilder.newInstance().buildMessage();
+
+            fault.setContent(exception);
+            ExchangeDeadline.setResponded(exchange);
+            exchange.sendFault(fault);
         } else {
-            System.out.println("Unable to resolve invocation parameters.");
-            // TODO: sendFault...
+            LOG.error("Failed to invoke service '" + getServiceQName() + "'.", exception);
         }
     }
 }
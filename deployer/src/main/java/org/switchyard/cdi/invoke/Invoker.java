@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.invoke;
+
+/**
+ * Service operation invoker.
+ * <p/>
+ * Invokers are bound to a service operation once, when the service is deployed,
+ * and then reused for every exchange targeting that operation.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public interface Invoker {
+
+    /**
+     * Invoke the operation on the supplied target bean.
+     * @param target The target bean instance.
+     * @param args The operation arguments.
+     * @return The operation return value, or null for a void operation.
+     * @throws Exception The exception thrown by the operation implementation.
+     */
+    Object invoke(Object target, Object[] args) throws Exception;
+
+    /**
+     * Invoke a single arg operation on the supplied target bean.
+     * @param target The target bean instance.
+     * @param arg The operation argument.
+     * @return The operation return value, or null for a void operation.
+     * @throws Exception The exception thrown by the operation implementation.
+     */
+    Object invokeSingle(Object target, Object arg) throws Exception;
+}
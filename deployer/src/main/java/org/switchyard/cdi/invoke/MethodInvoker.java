@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * {@link MethodHandle} based {@link Invoker}.
+ * <p/>
+ * The operation {@link Method} is bound to a {@link MethodHandle} when the invoker is
+ * created, adapted to take the args as an array (or as a single arg, for single arg
+ * operations), so invocations don't go through reflection.  Exceptions thrown by the
+ * target method are rethrown as is.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class MethodInvoker implements Invoker {
+
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType SINGLE_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
+    private final Method method;
+    private final MethodHandle spreadHandle;
+    private final MethodHandle singleHandle;
+
+    public MethodInvoker(Method method) {
+        this.method = method;
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // Not permitted... public methods can still be bound...
+        }
+
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unexpected Exception.  Unable to access operation method '" + method + "'.", e);
+        }
+        if(Modifier.isStatic(method.getModifiers())) {
+            // Ignore the target...
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+
+        int paramCount = method.getParameterTypes().length;
+        spreadHandle = handle.asSpreader(Object[].class, paramCount).asType(SPREAD_TYPE);
+        singleHandle = (paramCount == 1 ? handle.asType(SINGLE_TYPE) : null);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Object invokeSingle(Object target, Object arg) throws Exception {
+        if(singleHandle == null) {
+            // Fails on the arg count...
+            return invoke(target, new Object[] {arg});
+        }
+
+        try {
+            return (Object) singleHandle.invokeExact(target, arg);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    public Object invoke(Object target, Object[] args) throws Exception {
+        try {
+            return (Object) spreadHandle.invokeExact(target, args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+}
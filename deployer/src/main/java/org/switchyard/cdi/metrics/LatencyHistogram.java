@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed bucket latency histogram.
+ * <p/>
+ * Latencies are recorded in power of 2 microsecond buckets i.e. bucket 0 counts latencies
+ * under 1&micro;s, and bucket <i>n</i> counts latencies from 2<sup>n-1</sup> up to
+ * 2<sup>n</sup> &micro;s.  The last bucket also counts everything above it.  Percentiles
+ * are reported as the upper bound of the bucket they fall in, so are accurate to within
+ * a factor of 2.
+ * <p/>
+ * Bucket counts are {@link LongAdder}s, so concurrent recording threads rarely contend.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public final class LatencyHistogram {
+
+    public static final int BUCKET_COUNT = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for(int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            buckets[bucket] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a latency.
+     * @param nanos The latency, in nanoseconds.
+     */
+    public void record(long nanos) {
+        if(nanos < 0) {
+            nanos = 0;
+        }
+        buckets[getBucket(nanos)].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Get the bucket counts.
+     * @return A snapshot of the bucket counts.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKET_COUNT];
+
+        for(int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket] = buckets[bucket].sum();
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for(long bucketCount : getBucketCounts()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    /**
+     * Get the cumulative latency.
+     * @return The sum of the recorded latencies, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Get the mean latency.
+     * @return The mean latency in microseconds, or 0 if nothing has been recorded.
+     */
+    public double getMeanMicros() {
+        long count = getCount();
+        if(count == 0) {
+            return 0;
+        }
+        return totalNanos.sum() / 1000.0 / count;
+    }
+
+    /**
+     * Get the latency at the supplied percentile.
+     * @param percentile The percentile e.g. 99.9.
+     * @return The upper bound (microseconds) of the bucket containing the percentile, or 0 if nothing has been recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] counts = getBucketCounts();
+        long count = 0;
+        for(long bucketCount : counts) {
+            count += bucketCount;
+        }
+        if(count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * (Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for(int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if(seen >= rank && seen > 0) {
+                return getBucketUpperBoundMicros(bucket);
+            }
+        }
+        return getBucketUpperBoundMicros(BUCKET_COUNT - 1);
+    }
+
+    public void reset() {
+        for(LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+
+    static int getBucket(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    static long getBucketUpperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Service metrics registry.
+ * <p/>
+ * Once {@link #register(MBeanServer) registered}, each {@link OperationMetrics} is
+ * registered as an MBean named:
+ * <pre>
+ * org.switchyard.cdi:type=OperationMetrics,service=&lt;service QName&gt;,operation=&lt;operation name&gt;
+ * </pre>
+ * and each {@link TransformMetrics} as:
+ * <pre>
+ * org.switchyard.cdi:type=TransformMetrics,from=&lt;from spec&gt;,to=&lt;to spec&gt;
+ * </pre>
+ * including metrics added after the registry was registered.  An existing MBean of
+ * the same name (e.g. from an earlier deployment in the same JVM) is replaced.
+ * <p/>
+ * {@link #unregister()} only unregisters the MBeans this registry still owns, so
+ * shutting down an earlier deployment leaves the MBeans that replaced its own alone.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class MetricsRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    public static final String DOMAIN = "org.switchyard.cdi";
+
+    private final ConcurrentMap<QName, ServiceMetrics> services = new ConcurrentHashMap<QName, ServiceMetrics>();
+    private final List<TransformMetrics> transforms = new ArrayList<TransformMetrics>();
+    private final Map<ObjectName, RegisteredMBean> registeredMBeans = new HashMap<ObjectName, RegisteredMBean>();
+    private MBeanServer mbeanServer;
+
+    /**
+     * Get the metrics for the named service, creating them if needed.
+     * @param serviceQName The service name.
+     * @return The service metrics.
+     */
+    public ServiceMetrics getServiceMetrics(QName serviceQName) {
+        ServiceMetrics serviceMetrics = services.get(serviceQName);
+
+        if(serviceMetrics == null) {
+            ServiceMetrics newMetrics = new ServiceMetrics(serviceQName, this);
+
+            serviceMetrics = services.putIfAbsent(serviceQName, newMetrics);
+            if(serviceMetrics == null) {
+                serviceMetrics = newMetrics;
+            }
+        }
+
+        return serviceMetrics;
+    }
+
+    public List<ServiceMetrics> getServiceMetrics() {
+        return new ArrayList<ServiceMetrics>(services.values());
+    }
+
+    /**
+     * Add transform metrics.
+     * @param transformMetrics The transform metrics.
+     */
+    public synchronized void addTransformMetrics(TransformMetrics transformMetrics) {
+        transforms.add(transformMetrics);
+        if(mbeanServer != null) {
+            registerMBean(transformMetrics, getObjectName(transformMetrics));
+        }
+    }
+
+    public synchronized List<TransformMetrics> getTransformMetrics() {
+        return new ArrayList<TransformMetrics>(transforms);
+    }
+
+    /**
+     * Register the operation and transform metrics MBeans.
+     * @param mbeanServer The MBean server.
+     */
+    public synchronized void register(MBeanServer mbeanServer) {
+        this.mbeanServer = mbeanServer;
+        for(ServiceMetrics serviceMetrics : services.values()) {
+            for(OperationMetrics operationMetrics : serviceMetrics.getOperationMetrics()) {
+                registerMBean(operationMetrics, getObjectName(operationMetrics));
+            }
+        }
+        for(TransformMetrics transformMetrics : transforms) {
+            registerMBean(transformMetrics, getObjectName(transformMetrics));
+        }
+    }
+
+    /**
+     * Unregister the operation and transform metrics MBeans.
+     */
+    public synchronized void unregister() {
+        if(mbeanServer == null) {
+            return;
+        }
+
+        for(Map.Entry<ObjectName, RegisteredMBean> registered : registeredMBeans.entrySet()) {
+            ObjectName objectName = registered.getKey();
+
+            if(registered.getValue().deregistered) {
+                // Replaced by a later deployment... not ours to unregister...
+                continue;
+            }
+            try {
+                mbeanServer.unregisterMBean(objectName);
+            } catch (InstanceNotFoundException e) {
+                // Already unregistered...
+            } catch (JMException e) {
+                LOG.warn("Failed to unregister MBean '" + objectName + "'.", e);
+            }
+        }
+        registeredMBeans.clear();
+        mbeanServer = null;
+    }
+
+    /**
+     * Get the MBean name for the supplied operation metrics.
+     * @param operationMetrics The operation metrics.
+     * @return The MBean name.
+     */
+    public static ObjectName getObjectName(OperationMetrics operationMetrics) {
+        try {
+            return new ObjectName(DOMAIN + ":type=OperationMetrics"
+                    + ",service=" + ObjectName.quote(operationMetrics.getServiceName())
+                    + ",operation=" + ObjectName.quote(operationMetrics.getOperationName()));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Unexpected Exception.  Failed to create MBean name for operation '" + operationMetrics.getOperationName() + "'.", e);
+        }
+    }
+
+    /**
+     * Get the MBean name for the supplied transform metrics.
+     * @param transformMetrics The transform metrics.
+     * @return The MBean name.
+     */
+    public static ObjectName getObjectName(TransformMetrics transformMetrics) {
+        try {
+            return new ObjectName(DOMAIN + ":type=TransformMetrics"
+                    + ",from=" + ObjectName.quote(transformMetrics.getFrom())
+                    + ",to=" + ObjectName.quote(transformMetrics.getTo()));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Unexpected Exception.  Failed to create MBean name for transform '" + transformMetrics + "'.", e);
+        }
+    }
+
+    synchronized void added(OperationMetrics operationMetrics) {
+        if(mbeanServer != null) {
+            registerMBean(operationMetrics, getObjectName(operationMetrics));
+        }
+    }
+
+    private void registerMBean(OperationMetrics mbean, ObjectName objectName) {
+        try {
+            registerMBean(new RegisteredMBean(mbean, OperationMetricsMBean.class), objectName);
+        } catch (NotCompliantMBeanException e) {
+            throw new IllegalStateException("Unexpected Exception.  OperationMetrics not a compliant MBean.", e);
+        }
+    }
+
+    private void registerMBean(TransformMetrics mbean, ObjectName objectName) {
+        try {
+            registerMBean(new RegisteredMBean(mbean, TransformMetricsMBean.class), objectName);
+        } catch (NotCompliantMBeanException e) {
+            throw new IllegalStateException("Unexpected Exception.  TransformMetrics not a compliant MBean.", e);
+        }
+    }
+
+    private void registerMBean(RegisteredMBean mbean, ObjectName objectName) {
+        try {
+            try {
+                mbeanServer.registerMBean(mbean, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                mbeanServer.unregisterMBean(objectName);
+                mbeanServer.registerMBean(mbean, objectName);
+            }
+            registeredMBeans.put(objectName, mbean);
+        } catch (JMException e) {
+            LOG.warn("Failed to register MBean '" + objectName + "'.", e);
+        }
+    }
+
+    /**
+     * MBean registered by this registry.
+     * <p/>
+     * Tells the registry when the MBean has been unregistered, including when
+     * it's replaced by another registry.
+     */
+    private static class RegisteredMBean extends StandardMBean {
+
+        private volatile boolean deregistered;
+
+        private <T> RegisteredMBean(T mbean, Class<T> mbeanInterface) throws NotCompliantMBeanException {
+            super(mbean, mbeanInterface);
+        }
+
+        @Override
+        public void postDeregister() {
+            deregistered = true;
+        }
+    }
+}
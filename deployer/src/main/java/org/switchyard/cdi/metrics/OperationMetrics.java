@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.metrics;
+
+import javax.xml.namespace.QName;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service operation metrics.
+ * <p/>
+ * Tracks the invocations of the operation on the service bean (count, in-flight, errors
+ * and latency), as well as the time client proxy callers spend waiting on the response.
+ * <pre>
+ * long start = metrics.invocationStarted();
+ * boolean failed = true;
+ * try {
+ *     // invoke...
+ *     failed = false;
+ * } finally {
+ *     metrics.invocationCompleted(start, failed);
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private final QName serviceQName;
+    private final String operationName;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram clientWait = new LatencyHistogram();
+
+    public OperationMetrics(QName serviceQName, String operationName) {
+        this.serviceQName = serviceQName;
+        this.operationName = operationName;
+    }
+
+    /**
+     * Record the start of an invocation of the operation.
+     * @return The invocation start time, to be passed to {@link #invocationCompleted(long, boolean)}.
+     */
+    public long invocationStarted() {
+        invocations.increment();
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the end of an invocation of the operation.
+     * @param startNanos The invocation start time, as returned by {@link #invocationStarted()}.
+     * @param failed True if the invocation failed.
+     */
+    public void invocationCompleted(long startNanos, boolean failed) {
+        latency.record(System.nanoTime() - startNanos);
+        inFlight.decrement();
+        if(failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Record the time a client proxy caller waited on the operation response.
+     * @param nanos The wait time, in nanoseconds.
+     */
+    public void clientWaited(long nanos) {
+        clientWait.record(nanos);
+    }
+
+    public QName getServiceQName() {
+        return serviceQName;
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    public LatencyHistogram getClientWaitHistogram() {
+        return clientWait;
+    }
+
+    public String getServiceName() {
+        return serviceQName.toString();
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    public long getInvocationCount() {
+        return invocations.sum();
+    }
+
+    public long getInFlightCount() {
+        return inFlight.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public double getMeanLatency() {
+        return latency.getMeanMicros();
+    }
+
+    public long getLatencyP50() {
+        return latency.getPercentileMicros(50);
+    }
+
+    public long getLatencyP99() {
+        return latency.getPercentileMicros(99);
+    }
+
+    public long getLatencyP999() {
+        return latency.getPercentileMicros(99.9);
+    }
+
+    public long getClientWaitCount() {
+        return clientWait.getCount();
+    }
+
+    public double getMeanClientWait() {
+        return clientWait.getMeanMicros();
+    }
+
+    public long getClientWaitP50() {
+        return clientWait.getPercentileMicros(50);
+    }
+
+    public long getClientWaitP99() {
+        return clientWait.getPercentileMicros(99);
+    }
+
+    public long getClientWaitP999() {
+        return clientWait.getPercentileMicros(99.9);
+    }
+
+    public void reset() {
+        invocations.reset();
+        errors.reset();
+        latency.reset();
+        clientWait.reset();
+    }
+}
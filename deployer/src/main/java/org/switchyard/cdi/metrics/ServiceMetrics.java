@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.metrics;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics for a service, by operation name.
+ * <p/>
+ * Callers should look up the {@link OperationMetrics} once, up front, where they can.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class ServiceMetrics {
+
+    private final QName serviceQName;
+    private final MetricsRegistry registry;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+
+    /**
+     * Unregistered service metrics.
+     * @param serviceQName The service name.
+     */
+    public ServiceMetrics(QName serviceQName) {
+        this(serviceQName, null);
+    }
+
+    ServiceMetrics(QName serviceQName, MetricsRegistry registry) {
+        this.serviceQName = serviceQName;
+        this.registry = registry;
+    }
+
+    public QName getServiceQName() {
+        return serviceQName;
+    }
+
+    /**
+     * Get the metrics for the named operation, creating them if needed.
+     * @param operationName The operation name.
+     * @return The operation metrics.
+     */
+    public OperationMetrics getOperationMetrics(String operationName) {
+        OperationMetrics operationMetrics = operations.get(operationName);
+
+        if(operationMetrics == null) {
+            OperationMetrics newMetrics = new OperationMetrics(serviceQName, operationName);
+
+            operationMetrics = operations.putIfAbsent(operationName, newMetrics);
+            if(operationMetrics == null) {
+                operationMetrics = newMetrics;
+                if(registry != null) {
+                    registry.added(newMetrics);
+                }
+            }
+        }
+
+        return operationMetrics;
+    }
+
+    public List<OperationMetrics> getOperationMetrics() {
+        return new ArrayList<OperationMetrics>(operations.values());
+    }
+}
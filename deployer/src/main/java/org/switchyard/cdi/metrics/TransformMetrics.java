@@ -0,0 +1,202 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transform execution metrics.
+ * <p/>
+ * Tracks the executions of a single (from, to) transform: count, failures, memoized
+ * result cache hits, latency and the sizes of String, char[] and byte[] inputs and outputs.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class TransformMetrics implements TransformMetricsMBean {
+
+    private final String from;
+    private final String to;
+    private final String transformer;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final SizeCounter inputSize = new SizeCounter();
+    private final SizeCounter outputSize = new SizeCounter();
+
+    /**
+     * Transform metrics.
+     * @param from The 'from' payload spec.
+     * @param to The 'to' payload spec.
+     * @param transformer The transformer description e.g. the transform method.
+     */
+    public TransformMetrics(String from, String to, String transformer) {
+        this.from = from;
+        this.to = to;
+        this.transformer = transformer;
+    }
+
+    /**
+     * Record a transform execution.
+     * @param nanos The execution time, in nanoseconds.
+     * @param input The input payload.
+     * @param output The output payload, or null if the transform failed.
+     * @param failed True if the transform failed.
+     */
+    public void executed(long nanos, Object input, Object output, boolean failed) {
+        invocations.increment();
+        latency.record(nanos);
+        inputSize.record(input);
+        if(failed) {
+            failures.increment();
+        } else {
+            outputSize.record(output);
+        }
+    }
+
+    /**
+     * Record a memoized result cache hit.
+     */
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getTransformer() {
+        return transformer;
+    }
+
+    public long getInvocationCount() {
+        return invocations.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    public long getTotalLatency() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getTotalNanos());
+    }
+
+    public double getMeanLatency() {
+        return latency.getMeanMicros();
+    }
+
+    public long getLatencyP50() {
+        return latency.getPercentileMicros(50);
+    }
+
+    public long getLatencyP99() {
+        return latency.getPercentileMicros(99);
+    }
+
+    public long getLatencyP999() {
+        return latency.getPercentileMicros(99.9);
+    }
+
+    public long getTotalInputSize() {
+        return inputSize.total.sum();
+    }
+
+    public double getMeanInputSize() {
+        return inputSize.getMean();
+    }
+
+    public long getTotalOutputSize() {
+        return outputSize.total.sum();
+    }
+
+    public double getMeanOutputSize() {
+        return outputSize.getMean();
+    }
+
+    public void reset() {
+        invocations.reset();
+        failures.reset();
+        cacheHits.reset();
+        latency.reset();
+        inputSize.reset();
+        outputSize.reset();
+    }
+
+    @Override
+    public String toString() {
+        return from + " -> " + to;
+    }
+
+    /**
+     * Payload size totals, for the payloads whose size is known.
+     */
+    private static class SizeCounter {
+
+        private final LongAdder total = new LongAdder();
+        private final LongAdder count = new LongAdder();
+
+        private void record(Object payload) {
+            int size;
+
+            if(payload instanceof String) {
+                size = ((String) payload).length();
+            } else if(payload instanceof byte[]) {
+                size = ((byte[]) payload).length;
+            } else if(payload instanceof char[]) {
+                size = ((char[]) payload).length;
+            } else {
+                // Size unknown...
+                return;
+            }
+
+            total.add(size);
+            count.increment();
+        }
+
+        private double getMean() {
+            long sized = count.sum();
+            if(sized == 0) {
+                return 0;
+            }
+            return (double) total.sum() / sized;
+        }
+
+        private void reset() {
+            total.reset();
+            count.reset();
+        }
+    }
+}
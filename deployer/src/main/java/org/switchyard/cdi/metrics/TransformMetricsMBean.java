@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.metrics;
+
+/**
+ * JMX view of the {@link TransformMetrics} for a transform.
+ * <p/>
+ * Latencies are in microseconds.  Percentiles are accurate to within a factor of 2
+ * (see {@link LatencyHistogram}).  Sizes are String/char[] lengths and byte[] lengths,
+ * and only cover payloads of those types.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public interface TransformMetricsMBean {
+
+    String getFrom();
+
+    String getTo();
+
+    String getTransformer();
+
+    long getInvocationCount();
+
+    long getFailureCount();
+
+    long getCacheHitCount();
+
+    long getTotalLatency();
+
+    double getMeanLatency();
+
+    long getLatencyP50();
+
+    long getLatencyP99();
+
+    long getLatencyP999();
+
+    long getTotalInputSize();
+
+    double getMeanInputSize();
+
+    long getTotalOutputSize();
+
+    double getMeanOutputSize();
+
+    /**
+     * Reset the counts and histogram.
+     */
+    void reset();
+}
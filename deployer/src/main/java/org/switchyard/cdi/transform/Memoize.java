@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Memoize the results of a {@link TransformSpecifier} transform method.
+ * <p/>
+ * Only for transforms that are pure functions of their input payload.  Results are
+ * cached per payload (by value equality) for {@link String}, boxed primitive, byte[] and
+ * char[] payloads up to {@link #maxKeyBytes()}.  Other payloads (including streams) are
+ * never cached.
+ * <p/>
+ * Cached results are shared by the consumers of equal payloads, so the transform result
+ * type must be immutable ({@link String}, primitive or boxed primitive), or a byte[] or
+ * char[] (copied for each consumer).  Transforms with any other result type are rejected
+ * when they're registered.
+ * <p/>
+ * The cache is bounded by entry count and by approximate size in bytes, and evicts
+ * least recently used entries.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+@Target({ METHOD })
+@Retention(RUNTIME)
+@Documented
+public @interface Memoize {
+
+    /**
+     * Maximum number of cached results.
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * Maximum approximate size of the cached payloads and results, in bytes.
+     */
+    long maxBytes() default 16 * 1024 * 1024;
+
+    /**
+     * Maximum size of a String, byte[] or char[] payload used as a cache key, in bytes.
+     * Larger payloads are transformed without being hashed or copied for the cache.
+     */
+    int maxKeyBytes() default TransformResultCache.DEFAULT_MAX_KEY_BYTES;
+}
@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.util.Arrays;
+
+/**
+ * Per-thread pool of reusable transform output buffers.
+ * <p/>
+ * A buffer is taken from the pool for the duration of a single transform execution and
+ * then released back to it.  The transform method must not hold onto the buffer after it
+ * returns.  Buffers that have grown beyond {@link #MAX_RETAINED_CAPACITY} are dropped on
+ * release, rather than being retained by the thread, so transforms producing larger outputs
+ * allocate a new buffer on every execution.  The cap can be raised through the
+ * {@value #MAX_RETAINED_CAPACITY_PROPERTY} system property, at the cost of each transform
+ * thread holding onto a buffer of up to that size.
+ * <p/>
+ * A buffer is only ever used by one thread at a time, so the buffers override the
+ * synchronized {@link CharArrayWriter}/{@link ByteArrayOutputStream} write, size, reset
+ * and copy methods with unsynchronized versions.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+final class OutputBuffers {
+
+    static final String MAX_RETAINED_CAPACITY_PROPERTY = "org.switchyard.cdi.transform.maxRetainedBufferCapacity";
+
+    /**
+     * Maximum buffer capacity (chars or bytes) retained per thread.  Defaults to 512K.
+     */
+    static final int MAX_RETAINED_CAPACITY = Integer.getInteger(MAX_RETAINED_CAPACITY_PROPERTY, 512 * 1024);
+
+    private static final ThreadLocal<CharBuffer> charBuffers = new ThreadLocal<CharBuffer>();
+    private static final ThreadLocal<ByteBuffer> byteBuffers = new ThreadLocal<ByteBuffer>();
+
+    private OutputBuffers() {
+    }
+
+    static CharBuffer takeCharBuffer(int initialCapacity) {
+        CharBuffer buffer = charBuffers.get();
+
+        if(buffer == null) {
+            return new CharBuffer(initialCapacity);
+        }
+
+        // Taken... a nested transform on this thread will get a new buffer...
+        charBuffers.set(null);
+        buffer.ensureCapacity(initialCapacity);
+        return buffer;
+    }
+
+    static void release(CharBuffer buffer) {
+        if(buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            buffer.reset();
+            charBuffers.set(buffer);
+        }
+    }
+
+    static ByteBuffer takeByteBuffer(int initialCapacity) {
+        ByteBuffer buffer = byteBuffers.get();
+
+        if(buffer == null) {
+            return new ByteBuffer(initialCapacity);
+        }
+
+        // Taken... a nested transform on this thread will get a new buffer...
+        byteBuffers.set(null);
+        buffer.ensureCapacity(initialCapacity);
+        return buffer;
+    }
+
+    static void release(ByteBuffer buffer) {
+        if(buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            buffer.reset();
+            byteBuffers.set(buffer);
+        }
+    }
+
+    static class CharBuffer extends CharArrayWriter {
+
+        private CharBuffer(int initialCapacity) {
+            super(Math.max(initialCapacity, 32));
+        }
+
+        private void ensureCapacity(int capacity) {
+            if(capacity > buf.length && count == 0) {
+                buf = new char[Math.min(capacity, MAX_RETAINED_CAPACITY)];
+            }
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        @Override
+        public void write(int c) {
+            if(count == buf.length) {
+                grow(count + 1);
+            }
+            buf[count++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+            if(off < 0 || len < 0 || off + len > chars.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            if(count + len > buf.length) {
+                grow(count + len);
+            }
+            System.arraycopy(chars, off, buf, count, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            if(count + len > buf.length) {
+                grow(count + len);
+            }
+            str.getChars(off, off + len, buf, count);
+            count += len;
+        }
+
+        @Override
+        public void reset() {
+            count = 0;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public char[] toCharArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, 0, count);
+        }
+
+        private void grow(int minCapacity) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, minCapacity));
+        }
+    }
+
+    static class ByteBuffer extends ByteArrayOutputStream {
+
+        private ByteBuffer(int initialCapacity) {
+            super(Math.max(initialCapacity, 32));
+        }
+
+        private void ensureCapacity(int capacity) {
+            if(capacity > buf.length && count == 0) {
+                buf = new byte[Math.min(capacity, MAX_RETAINED_CAPACITY)];
+            }
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        @Override
+        public void write(int b) {
+            if(count == buf.length) {
+                grow(count + 1);
+            }
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+            if(off < 0 || len < 0 || off + len > bytes.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            if(count + len > buf.length) {
+                grow(count + len);
+            }
+            System.arraycopy(bytes, off, buf, count, len);
+            count += len;
+        }
+
+        @Override
+        public void reset() {
+            count = 0;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        private void grow(int minCapacity) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, minCapacity));
+        }
+    }
+}
@@ -25,9 +25,25 @@ package org.switchyard.cdi.transform;
 import org.switchyard.Exchange;
 import org.switchyard.Scope;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Payload specification.
+ * <p/>
+ * Specs declared at deploy time (transform {@link From}/{@link To} specs and the Java types of
+ * service operations) are given a canonical instance, with a small integer id (see
+ * {@link #declare(String)}).  All instances for the same declared value share the id, so
+ * equality between declared specs is an id comparison and never a String comparison.
+ * <p/>
+ * Spec values supplied at runtime (e.g. by a consumer, via {@link #setInPayloadSpec(Exchange, String)})
+ * are only resolved against the declared specs (see {@link #valueOf(String)}), and never added to
+ * them, so consumers can't grow the canonical spec table.  An undeclared spec can't have a
+ * registered transform.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class PayloadSpec implements Serializable {
@@ -37,20 +53,111 @@ public class PayloadSpec implements Serializable {
     public static final String IN_PAYLOAD_SPEC_KEY  = PayloadSpec.class.getName() + "#IN";
     public static final String OUT_PAYLOAD_SPEC_KEY = PayloadSpec.class.getName() + "#OUT";
 
+    private static final ConcurrentMap<String, PayloadSpec> canonicalSpecs = new ConcurrentHashMap<String, PayloadSpec>();
+    private static final AtomicInteger idSequence = new AtomicInteger();
+    private static final ClassValue<PayloadSpec> javaTypeSpecs = new ClassValue<PayloadSpec>() {
+        @Override
+        protected PayloadSpec computeValue(Class<?> type) {
+            return declare(type.getName());
+        }
+    };
+
+    /**
+     * Id of specs not declared at the time they were created.
+     */
+    private static final int UNDECLARED = 0;
+
     private String value;
+    private transient int id;
 
     public PayloadSpec(String value) {
         // TODO: Add assertion checks...
 
         this.value = value;
+        this.id = valueOf(value).id;
+    }
+
+    private PayloadSpec(String value, int id) {
+        this.value = value;
+        this.id = id;
+    }
+
+    /**
+     * Resolve the supplied spec value against the declared specs.
+     * <p/>
+     * Does not declare the spec.
+     * @param value The spec value.
+     * @return The canonical PayloadSpec instance if the spec is declared, otherwise an undeclared PayloadSpec instance.
+     */
+    public static PayloadSpec valueOf(String value) {
+        PayloadSpec payloadSpec = canonicalSpecs.get(value);
+
+        if(payloadSpec == null) {
+            return new PayloadSpec(value, UNDECLARED);
+        }
+
+        return payloadSpec;
+    }
+
+    /**
+     * Get the canonical PayloadSpec instance for the supplied spec value, if it's declared.
+     * @param value The spec value.
+     * @return The canonical PayloadSpec instance, or null if the spec is not declared.
+     */
+    public static PayloadSpec getDeclared(String value) {
+        return canonicalSpecs.get(value);
+    }
+
+    /**
+     * Declare a spec, getting its canonical PayloadSpec instance.
+     * <p/>
+     * Declared specs are never removed, so only specs defined by the deployed code should be declared.
+     * @param value The spec value.
+     * @return The canonical PayloadSpec instance.
+     */
+    public static PayloadSpec declare(String value) {
+        PayloadSpec payloadSpec = canonicalSpecs.get(value);
+
+        if(payloadSpec == null) {
+            PayloadSpec newPayloadSpec = new PayloadSpec(value, idSequence.incrementAndGet());
+
+            payloadSpec = canonicalSpecs.putIfAbsent(value, newPayloadSpec);
+            if(payloadSpec == null) {
+                payloadSpec = newPayloadSpec;
+            }
+        }
+
+        return payloadSpec;
+    }
+
+    static int getDeclaredCount() {
+        return canonicalSpecs.size();
     }
 
     public String getValue() {
         return value;
     }
 
+    /**
+     * Get the spec id.
+     * @return The id shared by all declared PayloadSpec instances having the same spec value,
+     * or 0 if the spec was not declared when this instance was created.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Is this a declared spec.
+     * @return True if the spec was declared when this instance was created.
+     */
+    public boolean isDeclared() {
+        return (id != UNDECLARED);
+    }
+
     @Override
     public int hashCode() {
+        // Not the id... must match undeclared instances of the same value...
         return value.hashCode();
     }
 
@@ -64,7 +171,10 @@ public class PayloadSpec implements Serializable {
         }
         if(obj instanceof PayloadSpec) {
             PayloadSpec payloadSpec = (PayloadSpec) obj;
-            return (payloadSpec.value.equals(value));
+            if(id != UNDECLARED && payloadSpec.id != UNDECLARED) {
+                return (payloadSpec.id == id);
+            }
+            return value.equals(payloadSpec.value);
         }
 
         return false;
@@ -75,8 +185,12 @@ public class PayloadSpec implements Serializable {
         return value;
     }
 
+    private Object readResolve() throws ObjectStreamException {
+        return valueOf(value);
+    }
+
     public static void setInPayloadSpec(Exchange exchange, String payloadSpec) {
-        exchange.getContext(Scope.EXCHANGE).setProperty(IN_PAYLOAD_SPEC_KEY, new PayloadSpec(payloadSpec));
+        exchange.getContext(Scope.EXCHANGE).setProperty(IN_PAYLOAD_SPEC_KEY, valueOf(payloadSpec));
     }
 
     public static PayloadSpec getInPayloadSpec(Exchange exchange) {
@@ -84,23 +198,36 @@ public class PayloadSpec implements Serializable {
     }
 
     public static void setOutPayloadSpec(Exchange exchange, String payloadSpec) {
-        exchange.getContext(Scope.EXCHANGE).setProperty(OUT_PAYLOAD_SPEC_KEY, new PayloadSpec(payloadSpec));
+        exchange.getContext(Scope.EXCHANGE).setProperty(OUT_PAYLOAD_SPEC_KEY, valueOf(payloadSpec));
     }
 
     public static PayloadSpec getOutPayloadSpec(Exchange exchange) {
         return (PayloadSpec) exchange.getContext(Scope.EXCHANGE).getProperty(OUT_PAYLOAD_SPEC_KEY);
     }
 
+    /**
+     * Declare the Java type spec for the supplied type.
+     * <p/>
+     * The spec is cached per type, so repeat calls don't build the type name or look it up.
+     * @param type The Java type.
+     * @return The canonical PayloadSpec instance.
+     */
     public static PayloadSpec toPayloadSpec(Class<?> type) {
-        return new PayloadSpec(type.getName());
+        return javaTypeSpecs.get(type);
     }
-    
+
+    /**
+     * Declare the supplied {@link From}/{@link To} spec.
+     * @param payloadSpec The spec value, or "" for the Java type spec.
+     * @param type The Java type.
+     * @return The canonical PayloadSpec instance.
+     */
     public static PayloadSpec toPayloadSpec(String payloadSpec, Class<?> type) {
         if(payloadSpec.equals("")) {
             // Default mime type to Java...
-            payloadSpec = type.getName();
+            return toPayloadSpec(type);
         }
 
-        return new PayloadSpec(payloadSpec);
+        return declare(payloadSpec);
     }
 }
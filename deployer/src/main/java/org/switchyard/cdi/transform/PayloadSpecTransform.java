@@ -22,21 +22,81 @@
 
 package org.switchyard.cdi.transform;
 
-import java.io.IOException;
-import java.io.StringWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.switchyard.cdi.BeanReference;
+import org.switchyard.cdi.metrics.TransformMetrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
+ * {@link PayloadSpec} based {@link Transform}, backed by a transform method.
+ * <p/>
+ * Supported transform method signatures:
+ * <ul>
+ * <li><code>X method(@From P payload)</code>: The result is the method return value.</li>
+ * <li><code>void method(@From P payload, @To Writer out)</code>: The result is a String.</li>
+ * <li><code>void method(@From P payload, @To OutputStream out)</code>: The result is a byte[].</li>
+ * <li><code>void method(@From P payload, @To WritableByteChannel out)</code>: The result is a byte[].</li>
+ * </ul>
+ * If the payload parameter (P) is a {@link Reader} or {@link InputStream}, String, char[],
+ * byte[], Reader and InputStream payloads are all accepted.  They're passed straight through,
+ * or wrapped in a stream, rather than being copied.  Character payloads for an InputStream
+ * parameter are encoded as the stream is read.  Character/byte conversions use UTF-8.
+ * <p/>
+ * Other @To parameter types are rejected when the transform is created.
+ * <p/>
+ * Writer/stream outputs are written to per-thread reusable buffers, sized from the
+ * output sizes previously seen for this transform.  The transform method must not
+ * hold onto the Writer/stream after returning.  The result is a String or byte[], so
+ * stream and channel outputs are buffered in full and then copied out of the reusable
+ * buffer, rather than streamed to the consumer.
+ * <p/>
+ * A transform method that throws an exception is logged, and the transform result is null.
+ * <p/>
+ * Results of {@link Memoize} transform methods are cached.
+ * <p/>
+ * Executions are recorded in the transform's {@link TransformMetrics}.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class PayloadSpecTransform implements Transform {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PayloadSpecTransform.class);
+
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    /**
+     * Internal transform result for a failed transform method invocation.
+     */
+    private static final Object FAILED = new Object();
+
+    private enum Input { OBJECT, READER, INPUT_STREAM }
+    private enum Output { RETURN, WRITER, OUTPUT_STREAM, CHANNEL }
+
     private PayloadSpec from;
     private PayloadSpec to;
     private Object transformer;
+    private BeanReference transformerReference;
     private Method transformMethod;
+    private Input inputType = Input.OBJECT;
+    private Output outputType = Output.RETURN;
+    private volatile int outputSizeEstimate;
+    private TransformResultCache resultCache;
+    private TransformMetrics metrics;
 
     protected PayloadSpecTransform() {
     }
@@ -44,10 +104,62 @@ public class PayloadSpecTransform implements Transform {
     public PayloadSpecTransform(PayloadSpec from, PayloadSpec to, Object transformer, Method transformMethod) {
         // TODO: Add assertion checks...
 
-        this.from = from;
-        this.to = to;
-        this.transformer = transformer;
+        // Transforms are indexed on declared specs...
+        this.from = PayloadSpec.declare(from.getValue());
+        this.to = PayloadSpec.declare(to.getValue());
+        if(transformer instanceof BeanReference && !((BeanReference) transformer).isCreated()) {
+            // Transformer instance created on first use...
+            this.transformerReference = (BeanReference) transformer;
+        } else if(transformer instanceof BeanReference) {
+            this.transformer = ((BeanReference) transformer).get();
+        } else {
+            this.transformer = transformer;
+        }
         this.transformMethod = transformMethod;
+        this.metrics = new TransformMetrics(this.from.toString(), this.to.toString(), transformMethod.getDeclaringClass().getName() + "#" + transformMethod.getName());
+
+        Class<?>[] transformParams = transformMethod.getParameterTypes();
+        if(transformParams[0] == Reader.class) {
+            inputType = Input.READER;
+        } else if(transformParams[0] == InputStream.class) {
+            inputType = Input.INPUT_STREAM;
+        }
+        if(transformParams.length > 1) {
+            Class<?> toType = transformParams[1];
+
+            if(toType == Writer.class) {
+                outputType = Output.WRITER;
+            } else if(toType == OutputStream.class) {
+                outputType = Output.OUTPUT_STREAM;
+            } else if(toType == WritableByteChannel.class) {
+                outputType = Output.CHANNEL;
+            } else {
+                throw new IllegalArgumentException("Unsupported @To parameter type '" + toType.getName() + "' on transform method '" + transformMethod + "'.  Must be a Writer, OutputStream or WritableByteChannel.");
+            }
+        }
+
+        Memoize memoize = transformMethod.getAnnotation(Memoize.class);
+        if(memoize != null) {
+            Class<?> resultType = getResultType();
+
+            // Cached results are shared by consumers... they must not be able to modify them...
+            if(!TransformResultCache.isCacheableResultType(resultType)) {
+                throw new IllegalArgumentException("Unsupported @Memoize result type '" + resultType.getName() + "' on transform method '" + transformMethod + "'.  Must be a String, primitive, boxed primitive, byte[] or char[].");
+            }
+            resultCache = new TransformResultCache(memoize.maxEntries(), memoize.maxBytes(), memoize.maxKeyBytes());
+        }
+    }
+
+    private Class<?> getResultType() {
+        switch(outputType) {
+            case WRITER:
+                return String.class;
+            case OUTPUT_STREAM:
+            case CHANNEL:
+                return byte[].class;
+            default:
+                return transformMethod.getReturnType();
+        }
     }
 
     public PayloadSpec getFrom() {
@@ -59,6 +171,9 @@ public class PayloadSpecTransform implements Transform {
     }
 
     public Object getTransformer() {
+        if(transformerReference != null) {
+            return transformerReference.get();
+        }
         return transformer;
     }
 
@@ -66,41 +181,164 @@ public class PayloadSpecTransform implements Transform {
         return transformMethod;
     }
 
+    /**
+     * Get the result cache for a {@link Memoize} transform.
+     * @return The result cache, or null if the transform is not memoized.
+     */
+    public TransformResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Get the transform execution metrics.
+     * @return The transform metrics.
+     */
+    public TransformMetrics getMetrics() {
+        return metrics;
+    }
+
     public Object execute(Object payload) {
+        if(metrics == null) {
+            return toResult(executeTransform(payload));
+        }
+
+        long start = System.nanoTime();
+        Object result = FAILED;
+        try {
+            result = executeTransform(payload);
+        } finally {
+            metrics.executed(System.nanoTime() - start, payload, toResult(result), result == FAILED);
+        }
+
+        return toResult(result);
+    }
+
+    private Object executeTransform(Object payload) {
+        if(resultCache != null) {
+            Object key = resultCache.toKey(payload);
+
+            if(key != null) {
+                Object result = resultCache.get(key);
+                if(result == null) {
+                    result = transform(payload);
+                    if(result != null && result != FAILED) {
+                        resultCache.put(key, result);
+                    }
+                } else if(metrics != null) {
+                    metrics.cacheHit();
+                }
+                return result;
+            }
+        }
+
+        return transform(payload);
+    }
+
+    private static Object toResult(Object result) {
+        return (result == FAILED ? null : result);
+    }
+
+    private Object transform(Object payload) {
         Method transformMethod = getTransformMethod();
-        Class<?>[] transformParams = transformMethod.getParameterTypes();
 
         try {
-            if(transformParams.length == 1) {
-                return transformMethod.invoke(getTransformer(), payload);
-            } else {
-                Class<?> toType = transformParams[1];
+            Object input = toInput(payload);
 
-                if(toType == Writer.class) {
-                    StringWriter outputWriter = new StringWriter();
+            switch(outputType) {
+                case WRITER:
+                    OutputBuffers.CharBuffer outputWriter = OutputBuffers.takeCharBuffer(getOutputSizeEstimate());
                     try {
-                        transformMethod.invoke(getTransformer(), payload, outputWriter);
-                        outputWriter.flush();
+                        transformMethod.invoke(getTransformer(), input, outputWriter);
+                        recordOutputSize(outputWriter.size());
                         return outputWriter.toString();
                     } finally {
-                        try {
-                            outputWriter.close();
-                        } catch (IOException e) {
-                            // unexpected on a StringWriter
-                        }
+                        OutputBuffers.release(outputWriter);
                     }
-                } else {
-                    // TODO: Support others ??
-                }
+                case OUTPUT_STREAM:
+                    OutputBuffers.ByteBuffer outputStream = OutputBuffers.takeByteBuffer(getOutputSizeEstimate());
+                    try {
+                        transformMethod.invoke(getTransformer(), input, outputStream);
+                        recordOutputSize(outputStream.size());
+                        return outputStream.toByteArray();
+                    } finally {
+                        OutputBuffers.release(outputStream);
+                    }
+                case CHANNEL:
+                    OutputBuffers.ByteBuffer channelStream = OutputBuffers.takeByteBuffer(getOutputSizeEstimate());
+                    try {
+                        transformMethod.invoke(getTransformer(), input, Channels.newChannel(channelStream));
+                        recordOutputSize(channelStream.size());
+                        return channelStream.toByteArray();
+                    } finally {
+                        OutputBuffers.release(channelStream);
+                    }
+                default:
+                    // RETURN...
+                    return transformMethod.invoke(getTransformer(), input);
             }
         } catch (IllegalAccessException e) {
-            // TODO: sendFault ...
-            e.printStackTrace();
+            LOG.error("Unable to access transform method '" + transformMethod + "'.", e);
         } catch (InvocationTargetException e) {
-            // TODO: sendFault ...
-            e.printStackTrace();
+            LOG.error("Transform method '" + transformMethod + "' failed.", e.getCause());
+        }
+
+        return FAILED;
+    }
+
+    /**
+     * Get the initial output buffer capacity, based on the output sizes seen so far.
+     */
+    private int getOutputSizeEstimate() {
+        int estimate = outputSizeEstimate;
+        // Add some headroom so as to avoid growing the buffer for slightly larger outputs...
+        return estimate + (estimate >> 2);
+    }
+
+    private void recordOutputSize(int size) {
+        // Moving average... racy updates are harmless...
+        int estimate = outputSizeEstimate;
+        if(estimate == 0) {
+            outputSizeEstimate = size;
+        } else {
+            outputSizeEstimate = estimate - (estimate >> 3) + (size >> 3);
         }
+    }
+
+    /**
+     * Is the supplied type a supported @To parameter type.
+     * @param type The parameter type.
+     * @return True if the type is a Writer, OutputStream or WritableByteChannel.
+     */
+    static boolean isOutputType(Class<?> type) {
+        return (type == Writer.class || type == OutputStream.class || type == WritableByteChannel.class);
+    }
 
-        return null;
+    private Object toInput(Object payload) {
+        switch(inputType) {
+            case READER:
+                if(payload instanceof String) {
+                    return new StringReader((String) payload);
+                } else if(payload instanceof char[]) {
+                    return new CharArrayReader((char[]) payload);
+                } else if(payload instanceof byte[]) {
+                    return new InputStreamReader(new ByteArrayInputStream((byte[]) payload), UTF_8);
+                } else if(payload instanceof InputStream) {
+                    return new InputStreamReader((InputStream) payload, UTF_8);
+                }
+                return payload;
+            case INPUT_STREAM:
+                if(payload instanceof byte[]) {
+                    return new ByteArrayInputStream((byte[]) payload);
+                } else if(payload instanceof String) {
+                    return new ReaderInputStream(new StringReader((String) payload), UTF_8);
+                } else if(payload instanceof char[]) {
+                    return new ReaderInputStream(new CharArrayReader((char[]) payload), UTF_8);
+                } else if(payload instanceof Reader) {
+                    return new ReaderInputStream((Reader) payload, UTF_8);
+                }
+                return payload;
+            default:
+                return payload;
+        }
     }
 }
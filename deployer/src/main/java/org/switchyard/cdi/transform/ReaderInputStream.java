@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encoding {@link InputStream} over a {@link Reader}.
+ * <p/>
+ * Encodes the characters in small chunks as the stream is read, rather than encoding
+ * (copying) the whole character payload up front.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+final class ReaderInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final Reader reader;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+    // Big enough for any CHUNK_SIZE chars, in any charset...
+    private final ByteBuffer bytes;
+    private boolean endOfInput;
+    private boolean encoded;
+    private boolean flushed;
+
+    ReaderInputStream(Reader reader, Charset charset) {
+        this.reader = reader;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate((int) Math.ceil(CHUNK_SIZE * encoder.maxBytesPerChar()) + 16);
+        bytes.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!fill()) {
+            return -1;
+        }
+        return (bytes.get() & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || off + len > buffer.length) {
+            throw new IndexOutOfBoundsException();
+        } else if(len == 0) {
+            return 0;
+        } else if(!fill()) {
+            return -1;
+        }
+
+        int count = Math.min(len, bytes.remaining());
+        bytes.get(buffer, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return bytes.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Encode the next chunk, if the current one has been read.
+     * @return False at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        while(!bytes.hasRemaining()) {
+            if(flushed) {
+                return false;
+            }
+
+            bytes.clear();
+            if(!encoded) {
+                if(!endOfInput && reader.read(chars) == -1) {
+                    endOfInput = true;
+                }
+                chars.flip();
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                chars.compact();
+                encoded = (endOfInput && result.isUnderflow());
+            }
+            if(encoded) {
+                flushed = encoder.flush(bytes).isUnderflow();
+            }
+            bytes.flip();
+        }
+
+        return true;
+    }
+}
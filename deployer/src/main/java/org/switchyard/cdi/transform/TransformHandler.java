@@ -26,14 +26,24 @@ import org.switchyard.Exchange;
 import org.switchyard.ExchangeHandler;
 import org.switchyard.HandlerException;
 import org.switchyard.Message;
+import org.switchyard.cdi.BeanServiceMetadata;
+import org.switchyard.cdi.ExchangeDeadline;
 import org.switchyard.cdi.transform.factory.TransformFactory;
 
+import javax.xml.namespace.QName;
+
 /**
+ * Exchange payload transformation handler.
+ * <p/>
+ * Exchanges that reach the handler after their {@link ExchangeDeadline} are not transformed.
+ * A {@link org.switchyard.cdi.ServiceTimeoutException} fault is sent back instead.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class TransformHandler implements ExchangeHandler {
 
     private TransformFactory transformFactory;
+    private QName serviceQName;
 
     // TODO:  There's an issue here and we're not addressing it yet....
     //
@@ -52,11 +62,22 @@ public class TransformHandler implements ExchangeHandler {
     //
 
     public TransformHandler(TransformFactory transformFactory) {
+        this(transformFactory, null);
+    }
+
+    public TransformHandler(TransformFactory transformFactory, QName serviceQName) {
         this.transformFactory = transformFactory;
+        this.serviceQName = serviceQName;
     }
 
     public void handleMessage(Exchange exchange) throws HandlerException {
         if(exchange != null) {
+            // The consumer has stopped waiting on the response... don't waste a transform on it...
+            if(ExchangeDeadline.isExpired(exchange)) {
+                ExchangeDeadline.sendTimeoutFault(exchange, serviceQName, BeanServiceMetadata.getOperationName(exchange));
+                return;
+            }
+
             Transform transform = transformFactory.getTransform(exchange);
             if(transform != null) {
                 Message message = exchange.getMessage();
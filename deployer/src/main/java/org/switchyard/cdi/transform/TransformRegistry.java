@@ -22,40 +22,360 @@
 
 package org.switchyard.cdi.transform;
 
+import org.switchyard.cdi.BeanReference;
+import org.switchyard.cdi.metrics.MetricsRegistry;
+import org.switchyard.cdi.metrics.TransformMetrics;
+
 import javax.enterprise.context.ApplicationScoped;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * Transform registry.
+ * <p/>
+ * Transforms are indexed on the {@link PayloadSpec#getId() ids} of their 'from' and 'to'
+ * {@link PayloadSpec} pair, so lookups never hash or compare spec values.  Lookups read an
+ * immutable snapshot of the index without locking.  Registration builds a new snapshot
+ * and swaps it in.
+ * <p/>
+ * The registry is also treated as a graph of {@link PayloadSpec PayloadSpecs}.  If there's
+ * no direct transform between two specs, the shortest chain of transforms
+ * linking them (e.g. "urn:order:v1:xml" -> "org.acme.Order" -> "urn:order:v2:xml") is
+ * compiled into a single {@link Transform}.  Compiled chains are cached per (from, to) pair
+ * until the next registration.
+ * <p/>
+ * Each registered transform records its execution {@link TransformMetrics}.  Chains record
+ * against the transforms they're compiled from.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 @ApplicationScoped
 public class TransformRegistry {
 
-    private List<PayloadSpecTransform> transforms = new CopyOnWriteArrayList<PayloadSpecTransform>();
+    /**
+     * Placeholder for a cached "no chain" lookup result.
+     */
+    private static final Transform NO_TRANSFORM = new ChainedTransform(new Transform[0]);
+
+    private volatile Index index = new Index(new FromTransforms[0], 0);
+    private MetricsRegistry metricsRegistry;
 
     public void add(Object transformer) {
-        for(Method method : transformer.getClass().getMethods()) {
-            add(transformer, method);
+        List<PayloadSpecTransform> transformerTransforms = new ArrayList<PayloadSpecTransform>();
+
+        collectTransforms(transformer, transformerTransforms);
+        add(transformerTransforms);
+    }
+
+    /**
+     * Add a batch of transformers.
+     * <p/>
+     * The index is rebuilt once for the whole batch, rather than once per transformer.
+     * @param transformers The transformers.
+     */
+    public void addAll(Collection<?> transformers) {
+        List<PayloadSpecTransform> transformerTransforms = new ArrayList<PayloadSpecTransform>();
+
+        for(Object transformer : transformers) {
+            collectTransforms(transformer, transformerTransforms);
+        }
+        add(transformerTransforms);
+    }
+
+    /**
+     * Add a batch of transforms created directly, rather than from annotated transformers.
+     * <p/>
+     * The index is rebuilt once for the whole batch.
+     * @param transforms The transforms.
+     */
+    public void addTransforms(Collection<? extends PayloadSpecTransform> transforms) {
+        add(new ArrayList<PayloadSpecTransform>(transforms));
+    }
+
+    /**
+     * Add a batch of transformers whose transform methods are already known e.g. from the
+     * build-time deployment index.
+     * <p/>
+     * Transforms are registered in the map's iteration order, so an ordered map gives a
+     * deterministic registration.
+     * @param transformers The transformers, mapped to their transform methods.  A null method
+     * list means the transformer's methods are inspected.
+     */
+    public void addAll(Map<Object, ? extends Collection<Method>> transformers) {
+        List<PayloadSpecTransform> transformerTransforms = new ArrayList<PayloadSpecTransform>();
+
+        for(Map.Entry<Object, ? extends Collection<Method>> transformer : transformers.entrySet()) {
+            if(transformer.getValue() == null) {
+                collectTransforms(transformer.getKey(), transformerTransforms);
+            } else {
+                for(Method method : transformer.getValue()) {
+                    PayloadSpecTransform transform = toTransform(transformer.getKey(), method);
+                    if(transform != null) {
+                        transformerTransforms.add(transform);
+                    }
+                }
+            }
+        }
+        add(transformerTransforms);
+    }
+
+    private void collectTransforms(Object transformer, List<PayloadSpecTransform> transformerTransforms) {
+        Class<?> transformerClass;
+
+        if(transformer instanceof BeanReference) {
+            transformerClass = ((BeanReference) transformer).getBeanClass();
+        } else {
+            transformerClass = transformer.getClass();
+        }
+
+        for(Method method : transformerClass.getMethods()) {
+            PayloadSpecTransform transform = toTransform(transformer, method);
+            if(transform != null) {
+                transformerTransforms.add(transform);
+            }
         }
     }
 
+    /**
+     * Get the transform for the specified 'from' and 'to' {@link PayloadSpec} pair.
+     * @param from The spec to transform from.
+     * @param to The spec to transform to.
+     * @return The direct transform if one is registered, otherwise a compiled chain of
+     * transforms, or null if 'to' is not reachable from 'from'.
+     */
     public Transform get(PayloadSpec from, PayloadSpec to) {
-        for(PayloadSpecTransform transform : transforms) {
-            if(transform.getFrom().equals(from) && transform.getTo().equals(to)) {
-                return transform;
+        from = toDeclared(from);
+        to = toDeclared(to);
+        if(from == null || to == null) {
+            // Undeclared specs have no transforms...
+            return null;
+        }
+
+        Index index = this.index;
+        FromTransforms fromTransforms = index.get(from);
+
+        if(fromTransforms == null) {
+            return null;
+        }
+
+        Transform transform = fromTransforms.get(to);
+        if(transform != null) {
+            return transform;
+        }
+
+        return getChain(index, from, to);
+    }
+
+    /**
+     * Get the registry version.
+     * <p/>
+     * The version changes whenever transforms are registered, so callers caching lookup
+     * results know when to discard them.
+     * @return The registry version.
+     */
+    public int getVersion() {
+        return index.version;
+    }
+
+    /**
+     * Get the execution metrics of the direct transform for the specified 'from' and 'to' pair.
+     * @param from The spec to transform from.
+     * @param to The spec to transform to.
+     * @return The transform metrics, or null if there's no direct transform registered.
+     */
+    public TransformMetrics getTransformMetrics(PayloadSpec from, PayloadSpec to) {
+        from = toDeclared(from);
+        to = toDeclared(to);
+        if(from == null || to == null) {
+            return null;
+        }
+
+        FromTransforms fromTransforms = index.get(from);
+        if(fromTransforms != null) {
+            PayloadSpecTransform transform = fromTransforms.get(to);
+            if(transform != null) {
+                return transform.getMetrics();
             }
         }
 
         return null;
     }
 
-    private void add(Object transformer, Method transformMethod) {
+    /**
+     * Get the execution metrics of all the registered transforms.
+     * @return The transform metrics, most expensive (cumulative latency) first.
+     */
+    public List<TransformMetrics> getTransformMetrics() {
+        List<TransformMetrics> transformMetrics = new ArrayList<TransformMetrics>();
+
+        for(PayloadSpecTransform transform : index.getTransforms()) {
+            transformMetrics.add(transform.getMetrics());
+        }
+
+        // Snapshot the totals before sorting... they're changing under us...
+        final Map<TransformMetrics, Long> totals = new IdentityHashMap<TransformMetrics, Long>();
+        for(TransformMetrics metrics : transformMetrics) {
+            totals.put(metrics, metrics.getLatencyHistogram().getTotalNanos());
+        }
+        Collections.sort(transformMetrics, new Comparator<TransformMetrics>() {
+            public int compare(TransformMetrics metrics1, TransformMetrics metrics2) {
+                return totals.get(metrics2).compareTo(totals.get(metrics1));
+            }
+        });
+
+        return transformMetrics;
+    }
+
+    /**
+     * Set the registry through which the transform metrics are exposed (JMX).
+     * <p/>
+     * Adds the metrics of the transforms already registered, as well as those of
+     * transforms registered from now on.
+     * @param metricsRegistry The metrics registry.
+     */
+    public synchronized void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        for(PayloadSpecTransform transform : index.getTransforms()) {
+            metricsRegistry.addTransformMetrics(transform.getMetrics());
+        }
+    }
+
+    /**
+     * Resolve the supplied spec to its declared instance.
+     * @return The declared spec, or null if it's not declared.
+     */
+    private static PayloadSpec toDeclared(PayloadSpec spec) {
+        if(spec.isDeclared()) {
+            return spec;
+        }
+
+        // May have been declared since it was resolved...
+        spec = PayloadSpec.valueOf(spec.getValue());
+        return (spec.isDeclared() ? spec : null);
+    }
+
+    private Transform getChain(Index index, PayloadSpec from, PayloadSpec to) {
+        // Only called for specs with transforms from them, so the id is in range...
+        ConcurrentMap<PayloadSpec, Transform> fromChains = index.chains.get(from.getId());
+
+        if(fromChains == null) {
+            fromChains = new ConcurrentHashMap<PayloadSpec, Transform>();
+            if(!index.chains.compareAndSet(from.getId(), null, fromChains)) {
+                fromChains = index.chains.get(from.getId());
+            }
+        }
+
+        Transform chain = fromChains.get(to);
+        if(chain == null) {
+            chain = compileChain(index, from, to);
+            fromChains.putIfAbsent(to, chain);
+        }
+
+        if(chain == NO_TRANSFORM) {
+            return null;
+        }
+        return chain;
+    }
+
+    /**
+     * Breadth first search for the shortest transform chain.
+     */
+    private Transform compileChain(Index index, PayloadSpec from, PayloadSpec to) {
+        Map<PayloadSpec, PayloadSpecTransform> reachedVia = new HashMap<PayloadSpec, PayloadSpecTransform>();
+        LinkedList<PayloadSpec> queue = new LinkedList<PayloadSpec>();
+
+        reachedVia.put(from, null);
+        queue.add(from);
+        while(!queue.isEmpty()) {
+            PayloadSpec spec = queue.removeFirst();
+            FromTransforms specTransforms = index.get(spec);
+
+            if(specTransforms == null) {
+                continue;
+            }
+
+            for(PayloadSpecTransform transform : specTransforms.transforms) {
+                PayloadSpec nextSpec = transform.getTo();
+
+                if(reachedVia.containsKey(nextSpec)) {
+                    continue;
+                }
+                reachedVia.put(nextSpec, transform);
+                if(nextSpec.equals(to)) {
+                    return toChain(reachedVia, from, to);
+                }
+                queue.add(nextSpec);
+            }
+        }
+
+        return NO_TRANSFORM;
+    }
+
+    private Transform toChain(Map<PayloadSpec, PayloadSpecTransform> reachedVia, PayloadSpec from, PayloadSpec to) {
+        LinkedList<Transform> steps = new LinkedList<Transform>();
+        PayloadSpec spec = to;
+
+        while(!spec.equals(from)) {
+            PayloadSpecTransform step = reachedVia.get(spec);
+            steps.addFirst(step);
+            spec = step.getFrom();
+        }
+
+        return new ChainedTransform(steps.toArray(new Transform[steps.size()]));
+    }
+
+    synchronized void add(List<PayloadSpecTransform> newTransforms) {
+        if(newTransforms.isEmpty()) {
+            return;
+        }
+
+        // Copy-on-write... only the 'from' entries being added to are replaced...
+        int maxFromId = index.transforms.length - 1;
+        for(PayloadSpecTransform transform : newTransforms) {
+            maxFromId = Math.max(maxFromId, transform.getFrom().getId());
+        }
+        FromTransforms[] snapshot = Arrays.copyOf(index.transforms, maxFromId + 1);
+
+        for(PayloadSpecTransform transform : newTransforms) {
+            PayloadSpec fromSpec = transform.getFrom();
+            PayloadSpec toSpec = transform.getTo();
+            FromTransforms fromTransforms = snapshot[fromSpec.getId()];
+
+            if(fromTransforms == null) {
+                fromTransforms = new FromTransforms(new int[0], new PayloadSpecTransform[0]);
+            } else if(fromTransforms.get(toSpec) != null) {
+                throw new IllegalArgumentException("Duplicate transform specification for '" + fromSpec + "' to '" + toSpec + "'.");
+            }
+            snapshot[fromSpec.getId()] = fromTransforms.add(transform);
+        }
+
+        // New index... drops all compiled chains...
+        index = new Index(snapshot, index.version + 1);
+
+        if(metricsRegistry != null) {
+            for(PayloadSpecTransform transform : newTransforms) {
+                metricsRegistry.addTransformMetrics(transform.getMetrics());
+            }
+        }
+    }
+
+    private PayloadSpecTransform toTransform(Object transformer, Method transformMethod) {
         if(transformMethod.getDeclaringClass() == Object.class) {
             // ignore...
-            return;
+            return null;
         }
 
         Class<?>[] params = transformMethod.getParameterTypes();
@@ -65,16 +385,24 @@ public class TransformRegistry {
         // Check make sure it's a Transform method...
         if(params.length == 0) {
             // Not a Transform method...
-            return;
+            return null;
         }
         From fromAnno = getAnnotation(From.class, paramAnnos[0]);
         if(fromAnno == null) {
             // Not a Transform method...
-            return;
+            return null;
         }
-        if(params.length == 1 && returnType == Void.class) {
+        if(params.length == 1 && returnType == void.class) {
             // TODO: Log/Throw... this is an impl error... specifies a From, but no To...
-            return;
+            return null;
+        }
+
+        if(params.length > 2) {
+            // Not a Transform method...
+            return null;
+        }
+        if(PayloadSpecTransform.isOutputType(params[0])) {
+            throw new IllegalArgumentException("Unsupported @From parameter type '" + params[0].getName() + "' on transform method '" + transformMethod + "'.  Writer, OutputStream and WritableByteChannel are @To types.");
         }
 
         // Create the 'from' and 'to' PayloadSpec instances...
@@ -84,18 +412,18 @@ public class TransformRegistry {
             To toAnno = getAnnotation(To.class, paramAnnos[1]);
             if(toAnno == null) {
                 // TODO: Log/Throw... this is an impl error... specifies a From, but no To on the second arg...
-                return;
+                return null;
+            }
+            if(!PayloadSpecTransform.isOutputType(params[1])) {
+                throw new IllegalArgumentException("Unsupported @To parameter type '" + params[1].getName() + "' on transform method '" + transformMethod + "'.  Must be a Writer, OutputStream or WritableByteChannel.");
             }
             toSpec = PayloadSpec.toPayloadSpec(toAnno.value(), params[1]);
         } else {
             toSpec = PayloadSpec.toPayloadSpec(returnType);
         }
 
-        // Add a Transform for the transform method...
-        if(get(fromSpec, toSpec) != null) {
-            throw new IllegalArgumentException("Duplicate transform specification for '" + fromSpec + "' to '" + toSpec + "'.");
-        }
-        transforms.add(new PayloadSpecTransform(fromSpec, toSpec, transformer, transformMethod));
+        // Create a Transform for the transform method...
+        return new PayloadSpecTransform(fromSpec, toSpec, transformer, transformMethod);
     }
 
     private <T extends Annotation> T getAnnotation(Class<T> anno, Annotation[] paramAnno) {
@@ -109,7 +437,7 @@ public class TransformRegistry {
     }
 
     public Object transformObject(Object object, PayloadSpec toSpec) {
-        PayloadSpec fromSpec = PayloadSpec.toPayloadSpec(object.getClass());
+        PayloadSpec fromSpec = PayloadSpec.valueOf(object.getClass().getName());
         return transformObject(object, fromSpec, toSpec);
     }
 
@@ -128,4 +456,89 @@ public class TransformRegistry {
 
         return object;
     }
+
+    /**
+     * Immutable transform index snapshot, plus the chains compiled from it.
+     */
+    private static class Index {
+
+        /**
+         * Indexed on the 'from' spec id.  Never modified once published.
+         */
+        private final FromTransforms[] transforms;
+        /**
+         * Indexed on the 'from' spec id.  to -> compiled chain.
+         */
+        private final AtomicReferenceArray<ConcurrentMap<PayloadSpec, Transform>> chains;
+        /**
+         * Incremented for each new snapshot.
+         */
+        private final int version;
+
+        private Index(FromTransforms[] transforms, int version) {
+            this.transforms = transforms;
+            this.chains = new AtomicReferenceArray<ConcurrentMap<PayloadSpec, Transform>>(transforms.length);
+            this.version = version;
+        }
+
+        /**
+         * Get the transforms from the supplied declared spec.
+         * @return The transforms, or null if there are none.
+         */
+        private FromTransforms get(PayloadSpec from) {
+            int id = from.getId();
+            return (id < transforms.length ? transforms[id] : null);
+        }
+
+        private List<PayloadSpecTransform> getTransforms() {
+            List<PayloadSpecTransform> allTransforms = new ArrayList<PayloadSpecTransform>();
+
+            for(FromTransforms fromTransforms : transforms) {
+                if(fromTransforms != null) {
+                    allTransforms.addAll(Arrays.asList(fromTransforms.transforms));
+                }
+            }
+            return allTransforms;
+        }
+    }
+
+    /**
+     * The transforms from a single spec, sorted on the 'to' spec id.  Immutable.
+     * <p/>
+     * Specs have few transforms from them, so a binary search of the ids beats hashing.
+     */
+    private static class FromTransforms {
+
+        private final int[] toIds;
+        private final PayloadSpecTransform[] transforms;
+
+        private FromTransforms(int[] toIds, PayloadSpecTransform[] transforms) {
+            this.toIds = toIds;
+            this.transforms = transforms;
+        }
+
+        private PayloadSpecTransform get(PayloadSpec to) {
+            int i = Arrays.binarySearch(toIds, to.getId());
+            return (i >= 0 ? transforms[i] : null);
+        }
+
+        /**
+         * Copy, adding the supplied transform.  Its 'to' spec must not already have a transform.
+         */
+        private FromTransforms add(PayloadSpecTransform transform) {
+            int toId = transform.getTo().getId();
+            int insertAt = -(Arrays.binarySearch(toIds, toId) + 1);
+            int[] newToIds = new int[toIds.length + 1];
+            PayloadSpecTransform[] newTransforms = new PayloadSpecTransform[transforms.length + 1];
+
+            System.arraycopy(toIds, 0, newToIds, 0, insertAt);
+            System.arraycopy(transforms, 0, newTransforms, 0, insertAt);
+            newToIds[insertAt] = toId;
+            newTransforms[insertAt] = transform;
+            System.arraycopy(toIds, insertAt, newToIds, insertAt + 1, toIds.length - insertAt);
+            System.arraycopy(transforms, insertAt, newTransforms, insertAt + 1, transforms.length - insertAt);
+
+            return new FromTransforms(newToIds, newTransforms);
+        }
+    }
 }
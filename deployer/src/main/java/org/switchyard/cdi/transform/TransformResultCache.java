@@ -0,0 +1,314 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Memoize} transform result cache.
+ * <p/>
+ * LRU cache, bounded by entry count and approximate size in bytes.  The cache is split
+ * into lock striped segments (by key hash), each with an equal share of the bounds, so
+ * LRU eviction is per segment.  Small caches use a single segment.
+ * <p/>
+ * Only immutable payloads are used as keys, i.e. {@link String}s, boxed primitives and
+ * (copies of) byte[] and char[] payloads.  String, byte[] and char[] payloads larger than
+ * the key size limit are not cached, so large payloads are never hashed, compared or copied
+ * for the cache.  byte[] and char[] results are copied on the way in and out of the cache,
+ * so callers can't modify the cached results.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class TransformResultCache {
+
+    /**
+     * Default maximum payload key size, in bytes.
+     */
+    public static final int DEFAULT_MAX_KEY_BYTES = 64 * 1024;
+
+    private static final int OBJECT_SIZE_ESTIMATE = 64;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_ENTRIES = 16;
+
+    private final Segment[] segments;
+    private final long maxKeyBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TransformResultCache(int maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, DEFAULT_MAX_KEY_BYTES);
+    }
+
+    public TransformResultCache(int maxEntries, long maxBytes, long maxKeyBytes) {
+        int segmentCount = 1;
+
+        this.maxKeyBytes = maxKeyBytes;
+
+        while(segmentCount < MAX_SEGMENTS && maxEntries / (segmentCount * 2) >= MIN_SEGMENT_ENTRIES) {
+            segmentCount *= 2;
+        }
+
+        segments = new Segment[segmentCount];
+        for(int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(Math.max(1, maxEntries / segmentCount), maxBytes / segmentCount);
+        }
+    }
+
+    /**
+     * Get the cache key for the supplied payload.
+     * @param payload The transform payload.
+     * @return The cache key, or null if the payload is not cacheable.
+     */
+    public Object toKey(Object payload) {
+        if(payload instanceof byte[]) {
+            byte[] bytes = (byte[]) payload;
+            return (bytes.length <= maxKeyBytes ? new ByteArrayKey(bytes) : null);
+        } else if(payload instanceof char[]) {
+            char[] chars = (char[]) payload;
+            return (chars.length * 2L <= maxKeyBytes ? new CharArrayKey(chars) : null);
+        } else if(payload instanceof String) {
+            return (((String) payload).length() * 2L <= maxKeyBytes ? payload : null);
+        } else if(payload != null && isImmutable(payload.getClass())) {
+            return payload;
+        }
+
+        return null;
+    }
+
+    /**
+     * Can results of the supplied type be cached.
+     * @param type The transform result type.
+     * @return True if the type is immutable (String, primitive or boxed primitive), or is
+     * a byte[] or char[] (copied in and out of the cache), otherwise false.
+     */
+    public static boolean isCacheableResultType(Class<?> type) {
+        return ((type.isPrimitive() && type != void.class) || isImmutable(type) || type == byte[].class || type == char[].class);
+    }
+
+    public Object get(Object key) {
+        Object result = segmentFor(key).get(key);
+
+        if(result != null) {
+            hits.incrementAndGet();
+            return copyOf(result);
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(Object key, Object result) {
+        // Don't retain the payload arrays... the caller may modify them...
+        if(key instanceof ByteArrayKey) {
+            key = new ByteArrayKey(((ByteArrayKey) key).bytes.clone());
+        } else if(key instanceof CharArrayKey) {
+            key = new CharArrayKey(((CharArrayKey) key).chars.clone());
+        }
+
+        result = copyOf(result);
+        segmentFor(key).put(key, new Entry(result, sizeOf(key) + sizeOf(result)));
+    }
+
+    public void clear() {
+        for(Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int getSize() {
+        int size = 0;
+        for(Segment segment : segments) {
+            size += segment.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Get the approximate size of the cached payloads and results.
+     * @return The approximate size, in bytes.
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for(Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+        return bytes;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private Segment segmentFor(Object key) {
+        int hash = key.hashCode();
+
+        // Spread the high bits down, as the segment count is small...
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return (type == String.class || type == Integer.class || type == Long.class
+                || type == Short.class || type == Byte.class || type == Character.class
+                || type == Boolean.class || type == Double.class || type == Float.class);
+    }
+
+    private static Object copyOf(Object result) {
+        if(result instanceof byte[]) {
+            return ((byte[]) result).clone();
+        } else if(result instanceof char[]) {
+            return ((char[]) result).clone();
+        }
+        return result;
+    }
+
+    static long sizeOf(Object object) {
+        if(object instanceof String) {
+            return 40 + ((String) object).length() * 2;
+        } else if(object instanceof ByteArrayKey) {
+            return 16 + ((ByteArrayKey) object).bytes.length;
+        } else if(object instanceof CharArrayKey) {
+            return 16 + ((CharArrayKey) object).chars.length * 2;
+        } else if(object instanceof byte[]) {
+            return 16 + ((byte[]) object).length;
+        } else if(object instanceof char[]) {
+            return 16 + ((char[]) object).length * 2;
+        }
+
+        return OBJECT_SIZE_ESTIMATE;
+    }
+
+    private class Segment {
+
+        private final int maxEntries;
+        private final long maxBytes;
+        private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+        private long bytes;
+
+        private Segment(int maxEntries, long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+
+        private synchronized Object get(Object key) {
+            Entry entry = entries.get(key);
+            return (entry != null ? entry.result : null);
+        }
+
+        private synchronized void put(Object key, Entry entry) {
+            if(entry.size > maxBytes) {
+                // Would evict everything else...
+                return;
+            }
+
+            Entry previous = entries.put(key, entry);
+            if(previous != null) {
+                bytes -= previous.size;
+            }
+            bytes += entry.size;
+
+            Iterator<Entry> lruIterator = entries.values().iterator();
+            while(entries.size() > maxEntries || bytes > maxBytes) {
+                Entry eldest = lruIterator.next();
+                lruIterator.remove();
+                bytes -= eldest.size;
+                evictions.incrementAndGet();
+            }
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+            bytes = 0;
+        }
+
+        private synchronized int getSize() {
+            return entries.size();
+        }
+
+        private synchronized long getBytes() {
+            return bytes;
+        }
+    }
+
+    private static class Entry {
+        private final Object result;
+        private final long size;
+
+        private Entry(Object result, long size) {
+            this.result = result;
+            this.size = size;
+        }
+    }
+
+    private static class ByteArrayKey {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        private ByteArrayKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof ByteArrayKey && Arrays.equals(bytes, ((ByteArrayKey) obj).bytes));
+        }
+    }
+
+    private static class CharArrayKey {
+        private final char[] chars;
+        private final int hashCode;
+
+        private CharArrayKey(char[] chars) {
+            this.chars = chars;
+            this.hashCode = Arrays.hashCode(chars);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof CharArrayKey && Arrays.equals(chars, ((CharArrayKey) obj).chars));
+        }
+    }
+}
@@ -22,61 +22,160 @@
 
 package org.switchyard.cdi.transform.factory;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.switchyard.Exchange;
 import org.switchyard.cdi.BeanServiceMetadata;
+import org.switchyard.cdi.transform.Accepts;
 import org.switchyard.cdi.transform.PayloadSpec;
 import org.switchyard.cdi.transform.Transform;
 import org.switchyard.cdi.transform.TransformRegistry;
 
-import java.lang.reflect.Method;
-import java.util.List;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
+ * Bean service invocation {@link TransformFactory}.
+ * <p/>
+ * Transforms the inbound payload to the parameter type of the target operation.  Call
+ * {@link #bind()} once the {@link TransformRegistry} is populated, so that the transforms for
+ * the inbound specs declared via {@link Accepts} are resolved (and any missing ones reported)
+ * up front.  Other inbound specs are resolved on first use.  Lookups are cached, including
+ * misses, until the {@link TransformRegistry} changes.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class BeanInvocationTransformFactory implements TransformFactory {
 
+    private static final Logger LOG = LoggerFactory.getLogger(BeanInvocationTransformFactory.class);
+
     private TransformRegistry transformRegistry;
     private BeanServiceMetadata beanServiceMetadata;
+    private final Map<BeanServiceMetadata.Operation, TransformCache> operationTransforms = new IdentityHashMap<BeanServiceMetadata.Operation, TransformCache>();
+    private final Map<BeanServiceMetadata.Operation, ArgumentsTransform> argumentsTransforms = new IdentityHashMap<BeanServiceMetadata.Operation, ArgumentsTransform>();
 
     public BeanInvocationTransformFactory(BeanServiceMetadata beanServiceMetadata, TransformRegistry transformRegistry) {
         this.beanServiceMetadata = beanServiceMetadata;
         this.transformRegistry = transformRegistry;
+
+        for(BeanServiceMetadata.Operation operation : beanServiceMetadata.getOperations()) {
+            if(operation.getArity() == 1) {
+                operationTransforms.put(operation, TransformCache.to(transformRegistry, PayloadSpec.toPayloadSpec(operation.getParameterType(0)), "operation '" + operation.getSignature() + "'"));
+            } else if(operation.getArity() > 1) {
+                argumentsTransforms.put(operation, new ArgumentsTransform(operation));
+            }
+        }
+    }
+
+    /**
+     * Bind the transforms for the inbound specs declared on the service operations.
+     * <p/>
+     * Missing transforms are logged.
+     */
+    public void bind() {
+        for(Map.Entry<BeanServiceMetadata.Operation, TransformCache> entry : operationTransforms.entrySet()) {
+            Accepts accepts = entry.getKey().getMethod().getAnnotation(Accepts.class);
+
+            if(accepts != null) {
+                for(String accepted : accepts.value()) {
+                    entry.getValue().get(PayloadSpec.declare(accepted));
+                }
+            }
+        }
     }
 
     public Transform getTransform(Exchange exchange) {
         String operationName = BeanServiceMetadata.getOperationName(exchange);
 
         if(operationName != null) {
-            List<Method> candidateMethods = beanServiceMetadata.getCandidateMethods(operationName);
+            BeanServiceMetadata.Operation operation = beanServiceMetadata.resolveOperation(exchange);
 
             // Operation name must resolve to exactly one bean method...
-            if(candidateMethods.size() != 1) {
+            if(operation == null) {
                 // TODO: sendFault ??? ...
                 return null;
             }
 
-            Method operationMethod = candidateMethods.get(0);
-            PayloadSpec fromSpec = PayloadSpec.getInPayloadSpec(exchange); // The data format sent by consumer
+            TransformCache transforms = operationTransforms.get(operation);
+            if(transforms != null) {
+                PayloadSpec fromSpec = PayloadSpec.getInPayloadSpec(exchange); // The data format sent by consumer
 
-            if(fromSpec == null) {
-                return null;
-            }
+                if(fromSpec == null) {
+                    return null;
+                }
 
-            Class<?>[] operationArgs = operationMethod.getParameterTypes();
-            if(operationArgs.length == 1) {
-                PayloadSpec toSpec = PayloadSpec.toPayloadSpec(operationArgs[0]);
-
-                return transformRegistry.get(fromSpec, toSpec);
+                return transforms.get(fromSpec);
             } else {
-                System.out.println("Unsupported... multi-args not yet suppoted....");
-                // TODO: sendFault ... don't support multi-args yet ...
+                // Multi-arg operation... each arg is transformed to its parameter type...
+                return argumentsTransforms.get(operation);
             }
         } else {
-            System.out.println("Operation name not specified on exchange.");
+            LOG.debug("Operation name not specified on exchange.");
             // TODO: Operation name not specified... sendFault  ...
         }
 
         return null;
     }
+
+    /**
+     * Multi-arg operation transform.
+     * <p/>
+     * Each arg is transformed from its runtime type to the type of the corresponding
+     * operation parameter.  Only arg types declared as specs (see {@link PayloadSpec#declare(String)})
+     * can be transformed, so the per-parameter caches are bounded by the deployed specs.
+     */
+    private class ArgumentsTransform implements Transform {
+
+        private final TransformCache[] transforms;
+
+        private ArgumentsTransform(BeanServiceMetadata.Operation operation) {
+            int arity = operation.getArity();
+
+            transforms = new TransformCache[arity];
+            for(int i = 0; i < arity; i++) {
+                transforms[i] = TransformCache.to(transformRegistry, PayloadSpec.toPayloadSpec(operation.getParameterType(i)), "parameter " + i + " of operation '" + operation.getSignature() + "'");
+            }
+        }
+
+        public Object execute(Object payload) {
+            if(!(payload instanceof Object[])) {
+                return payload;
+            }
+
+            Object[] args = (Object[]) payload;
+            if(args.length != transforms.length) {
+                return payload;
+            }
+
+            // Only copy the args if one of them needs to be transformed...
+            Object[] frame = args;
+            for(int i = 0; i < args.length; i++) {
+                Object arg = args[i];
+
+                if(arg != null) {
+                    Transform transform = getTransform(i, arg.getClass());
+
+                    if(transform != null) {
+                        if(frame == args) {
+                            frame = args.clone();
+                        }
+                        frame[i] = transform.execute(arg);
+                    }
+                }
+            }
+
+            return frame;
+        }
+
+        private Transform getTransform(int index, Class<?> argType) {
+            PayloadSpec fromSpec = PayloadSpec.getDeclared(argType.getName());
+
+            if(fromSpec == null) {
+                // Undeclared type... can't have a transform...
+                return null;
+            }
+
+            return transforms[index].get(fromSpec);
+        }
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform.factory;
+
+import org.switchyard.Exchange;
+import org.switchyard.cdi.BeanServiceMetadata;
+import org.switchyard.cdi.transform.PayloadSpec;
+import org.switchyard.cdi.transform.Transform;
+import org.switchyard.cdi.transform.TransformRegistry;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Bean service response {@link TransformFactory}.
+ * <p/>
+ * Transforms the OUT leg of an IN_OUT exchange from the Java return type of the invoked
+ * operation to the out {@link PayloadSpec} requested by the consumer, so consumers don't need
+ * to know about the service's Java model.
+ * <p/>
+ * Lookups are cached per operation, including misses, until the {@link TransformRegistry}
+ * changes.  A missing transform is logged once, and the response is returned untransformed.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class BeanResponseTransformFactory implements TransformFactory {
+
+    private TransformRegistry transformRegistry;
+    private BeanServiceMetadata beanServiceMetadata;
+    private final Map<BeanServiceMetadata.Operation, TransformCache> responseTransforms = new IdentityHashMap<BeanServiceMetadata.Operation, TransformCache>();
+
+    public BeanResponseTransformFactory(BeanServiceMetadata beanServiceMetadata, TransformRegistry transformRegistry) {
+        this.beanServiceMetadata = beanServiceMetadata;
+        this.transformRegistry = transformRegistry;
+
+        for(BeanServiceMetadata.Operation operation : beanServiceMetadata.getOperations()) {
+            Class<?> returnType = operation.getMethod().getReturnType();
+            if(returnType != void.class && returnType != Void.class) {
+                responseTransforms.put(operation, TransformCache.from(transformRegistry, PayloadSpec.toPayloadSpec(returnType), "the response of operation '" + operation.getSignature() + "'"));
+            }
+        }
+    }
+
+    public Transform getTransform(Exchange exchange) {
+        BeanServiceMetadata.Operation operation = beanServiceMetadata.resolveOperation(exchange);
+
+        if(operation == null) {
+            return null;
+        }
+
+        return getTransform(operation, exchange);
+    }
+
+    /**
+     * Get the response transformation for the supplied operation.
+     * @param operation The invoked operation.
+     * @param exchange The Exchange instance.
+     * @return The response transformation, or null if a transformation is not required.
+     */
+    public Transform getTransform(BeanServiceMetadata.Operation operation, Exchange exchange) {
+        PayloadSpec toSpec = PayloadSpec.getOutPayloadSpec(exchange); // The data format requested by consumer
+
+        if(toSpec == null) {
+            return null;
+        }
+
+        TransformCache transforms = responseTransforms.get(operation);
+        if(transforms != null) {
+            return transforms.get(toSpec);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform.factory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.switchyard.cdi.transform.PayloadSpec;
+import org.switchyard.cdi.transform.Transform;
+import org.switchyard.cdi.transform.TransformRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the {@link TransformRegistry} lookups between a fixed {@link PayloadSpec} and the
+ * specs seen at runtime.
+ * <p/>
+ * Misses are cached as well as hits, and each miss is logged once.  Only declared specs
+ * (see {@link PayloadSpec#declare(String)}) are cached, so the cache is bounded by the deployed
+ * specs.  The cache is discarded whenever the registry {@link TransformRegistry#getVersion() changes}.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+class TransformCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransformCache.class);
+
+    /**
+     * Placeholder for a cached miss.
+     */
+    private static final Transform NO_TRANSFORM = new Transform() {
+        public Object execute(Object payload) {
+            return payload;
+        }
+    };
+
+    private final TransformRegistry transformRegistry;
+    private final PayloadSpec spec;
+    private final boolean fromSpec;
+    private final String context;
+    private volatile Entries entries = new Entries(-1);
+
+    private TransformCache(TransformRegistry transformRegistry, PayloadSpec spec, boolean fromSpec, String context) {
+        this.transformRegistry = transformRegistry;
+        this.spec = spec;
+        this.fromSpec = fromSpec;
+        this.context = context;
+    }
+
+    /**
+     * Cache of the transforms from the supplied spec.
+     * @param transformRegistry The transform registry.
+     * @param fromSpec The spec transformed from.
+     * @param context The cache context e.g. the operation, for logging.
+     * @return The cache.
+     */
+    static TransformCache from(TransformRegistry transformRegistry, PayloadSpec fromSpec, String context) {
+        return new TransformCache(transformRegistry, fromSpec, true, context);
+    }
+
+    /**
+     * Cache of the transforms to the supplied spec.
+     * @param transformRegistry The transform registry.
+     * @param toSpec The spec transformed to.
+     * @param context The cache context e.g. the operation, for logging.
+     * @return The cache.
+     */
+    static TransformCache to(TransformRegistry transformRegistry, PayloadSpec toSpec, String context) {
+        return new TransformCache(transformRegistry, toSpec, false, context);
+    }
+
+    /**
+     * Get the transform between the cache spec and the supplied spec.
+     * @param otherSpec The 'to' spec if this is a {@link #from} cache, otherwise the 'from' spec.
+     * @return The transform, or null if no transformation is required or possible.
+     */
+    Transform get(PayloadSpec otherSpec) {
+        if(otherSpec.equals(spec)) {
+            return null;
+        }
+        if(!otherSpec.isDeclared()) {
+            // Not cached... the registry only resolves it if it has been declared since...
+            return lookup(otherSpec);
+        }
+
+        Entries entries = this.entries;
+        // Read the version before the lookup, so a stale lookup is never cached as current...
+        int version = transformRegistry.getVersion();
+        if(entries.version != version) {
+            entries = new Entries(version);
+            this.entries = entries;
+        }
+
+        Transform transform = entries.transforms.get(otherSpec);
+        if(transform == null) {
+            transform = lookup(otherSpec);
+            if(transform == null) {
+                if(entries.transforms.putIfAbsent(otherSpec, NO_TRANSFORM) == null) {
+                    LOG.info("No transform from '{}' to '{}' for {}.", new Object[] {getFrom(otherSpec), getTo(otherSpec), context});
+                }
+                return null;
+            }
+            entries.transforms.putIfAbsent(otherSpec, transform);
+        }
+
+        return (transform != NO_TRANSFORM ? transform : null);
+    }
+
+    private Transform lookup(PayloadSpec otherSpec) {
+        return transformRegistry.get(getFrom(otherSpec), getTo(otherSpec));
+    }
+
+    private PayloadSpec getFrom(PayloadSpec otherSpec) {
+        return (fromSpec ? spec : otherSpec);
+    }
+
+    private PayloadSpec getTo(PayloadSpec otherSpec) {
+        return (fromSpec ? otherSpec : spec);
+    }
+
+    private static class Entries {
+
+        private final int version;
+        private final ConcurrentMap<PayloadSpec, Transform> transforms = new ConcurrentHashMap<PayloadSpec, Transform>();
+
+        private Entries(int version) {
+            this.version = version;
+        }
+    }
+}
@@ -33,9 +33,11 @@ import org.switchyard.internal.ServiceDomains;
  */
 public abstract class AbstractCDITest {
 
+    protected WeldContainer weld;
+
     @Before
     public void setUp() throws Exception {
-        WeldContainer weld = new Weld().initialize();
+        weld = new Weld().initialize();
         weld.event().select(ContainerInitialized.class).fire(new ContainerInitialized());
     }    
 }
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class BeanServiceMetadataTest extends TestCase {
+
+    private BeanServiceMetadata metadata = new BeanServiceMetadata(OverloadedService.class);
+
+    public void test_single_operation() {
+        BeanServiceMetadata.Operation operation = metadata.resolveOperation("lookup", "x");
+
+        assertNotNull(operation);
+        assertEquals("lookup", operation.getName());
+        assertSame(operation, metadata.resolveOperation("lookup", 1));
+        assertSame(operation, metadata.getOperation("lookup", String.class));
+        assertEquals(1, metadata.getCandidateMethods("lookup").size());
+    }
+
+    public void test_overloads() {
+        BeanServiceMetadata.Operation stringOp = metadata.getOperation("update", String.class);
+        BeanServiceMetadata.Operation intOp = metadata.getOperation("update", Integer.TYPE);
+        BeanServiceMetadata.Operation twoArgOp = metadata.getOperation("update", String.class, String.class);
+
+        assertSame(stringOp, metadata.resolveOperation("update", "x"));
+        assertSame(intOp, metadata.resolveOperation("update", Integer.valueOf(1234)));
+        assertSame(twoArgOp, metadata.resolveOperation("update", new Object[] {"x", "y"}));
+        assertSame(twoArgOp, metadata.resolveOperation("update", 2));
+        assertEquals(3, metadata.getCandidateMethods("update").size());
+
+        // Ambiguous...
+        assertNull(metadata.resolveOperation("update", 1));
+    }
+
+    public void test_zero_arg_overload() throws Exception {
+        OverloadedService service = new OverloadedService();
+        BeanServiceMetadata.Operation zeroArgOp = metadata.getOperation("describe");
+        BeanServiceMetadata.Operation oneArgOp = metadata.getOperation("describe", String.class);
+
+        // Explicit zero args, as sent by the client proxies...
+        assertSame(zeroArgOp, metadata.resolveOperation("describe", BeanServiceMetadata.NO_ARGS));
+        assertSame(zeroArgOp, metadata.resolveOperation("describe", 0));
+        assertEquals("nothing", zeroArgOp.invoke(service, BeanServiceMetadata.NO_ARGS));
+
+        // Null content is zero args when there's a zero-arg overload...
+        assertSame(zeroArgOp, metadata.resolveOperation("describe", (Object) null));
+        assertEquals("nothing", zeroArgOp.invoke(service, null));
+
+        // An explicit null arg...
+        assertSame(oneArgOp, metadata.resolveOperation("describe", new Object[] {null}));
+        assertEquals("null", oneArgOp.invoke(service, null));
+        assertSame(oneArgOp, metadata.resolveOperation("describe", "x"));
+
+        // No zero-arg overload... null content is a single null arg...
+        assertSame(metadata.getOperation("lookup", String.class), metadata.resolveOperation("lookup", (Object) null));
+        assertSame(metadata.getOperation("join"), metadata.resolveOperation("join", (Object) null));
+        assertSame(metadata.getOperation("join"), metadata.resolveOperation("join", BeanServiceMetadata.NO_ARGS));
+    }
+
+    public void test_unknown_operation() {
+        assertNull(metadata.resolveOperation("unknown", "x"));
+        assertNull(metadata.getOperation("toString"));
+        assertTrue(metadata.getCandidateMethods("unknown").isEmpty());
+    }
+
+    public void test_invoke() throws Exception {
+        OverloadedService service = new OverloadedService();
+
+        assertEquals("x", metadata.resolveOperation("lookup", "x").invoke(service, "x"));
+        assertEquals("y", metadata.resolveOperation("lookup", "y").invoke(service, new Object[] {"y"}));
+    }
+
+    public void test_invoke_multi_arg() throws Exception {
+        OverloadedService service = new OverloadedService();
+
+        assertEquals("a=b", metadata.getOperation("join", String.class, String.class).invoke(service, new Object[] {"a", "b"}));
+        assertEquals("none", metadata.getOperation("join").invoke(service, null));
+    }
+
+    public void test_invoke_exception_not_wrapped() throws Exception {
+        try {
+            metadata.resolveOperation("lookup", "x").invoke(new OverloadedService(), new Object[] {null});
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertEquals("null key", e.getMessage());
+        }
+    }
+
+    public static class OverloadedService {
+        public String lookup(String key) {
+            if(key == null) {
+                throw new IllegalArgumentException("null key");
+            }
+            return key;
+        }
+        public void update(String value) {
+        }
+        public void update(int value) {
+        }
+        public void update(String key, String value) {
+        }
+        public String join(String key, String value) {
+            return key + "=" + value;
+        }
+        public String join() {
+            return "none";
+        }
+        public String describe() {
+            return "nothing";
+        }
+        public String describe(String value) {
+            return String.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import junit.framework.TestCase;
+import org.switchyard.ExchangePattern;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class ClientOperationTest extends TestCase {
+
+    public void test_void_is_in_only() throws Exception {
+        assertEquals(ExchangePattern.IN_ONLY, ClientProxyBean.ClientOperation.getExchangePattern(method(OrderClient.class, "cancel")));
+        assertEquals(ExchangePattern.IN_ONLY, ClientProxyBean.ClientOperation.getExchangePattern(method(OrderClient.class, "archive")));
+        assertFalse(ClientProxyBean.ClientOperation.isAsync(method(OrderClient.class, "cancel")));
+    }
+
+    public void test_value_is_in_out() throws Exception {
+        assertEquals(ExchangePattern.IN_OUT, ClientProxyBean.ClientOperation.getExchangePattern(method(OrderClient.class, "status")));
+        assertEquals(ExchangePattern.IN_OUT, ClientProxyBean.ClientOperation.getExchangePattern(method(OrderClient.class, "statusAsync")));
+        assertFalse(ClientProxyBean.ClientOperation.isAsync(method(OrderClient.class, "status")));
+        assertTrue(ClientProxyBean.ClientOperation.isAsync(method(OrderClient.class, "statusAsync")));
+        assertTrue(ClientProxyBean.ClientOperation.isAsync(method(OrderClient.class, "statusFuture")));
+        assertTrue(ClientProxyBean.ClientOperation.isAsync(method(OrderClient.class, "statusStage")));
+    }
+
+    public void test_asynchronous() throws Exception {
+        assertTrue(ClientProxyBean.ClientOperation.isAsync(method(OrderClient.class, "notify")));
+        // Ignored on operations that return a value...
+        assertFalse(ClientProxyBean.ClientOperation.isAsync(method(OrderClient.class, "asyncStatus")));
+        // Type level...
+        assertTrue(ClientProxyBean.ClientOperation.isAsync(method(AsyncOrderClient.class, "cancel")));
+        assertFalse(ClientProxyBean.ClientOperation.isAsync(method(AsyncOrderClient.class, "status")));
+    }
+
+    private static Method method(Class<?> type, String name) throws NoSuchMethodException {
+        return type.getMethod(name, String.class);
+    }
+
+    public interface OrderClient {
+        void cancel(String orderId);
+        Void archive(String orderId);
+        String status(String orderId);
+        Future<String> statusAsync(String orderId);
+        CompletableFuture<String> statusFuture(String orderId);
+        CompletionStage<String> statusStage(String orderId);
+        @Asynchronous
+        void notify(String orderId);
+        @Asynchronous
+        String asyncStatus(String orderId);
+    }
+
+    @Asynchronous
+    public interface AsyncOrderClient {
+        void cancel(String orderId);
+        String status(String orderId);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import junit.framework.TestCase;
+import org.switchyard.cdi.transform.TransformRegistryTest;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class DeploymentIndexTest extends TestCase {
+
+    private static final String ITEM_TRANSFORMS = TransformRegistryTest.ItemTransforms.class.getName();
+
+    public void test_not_indexed() {
+        DeploymentIndex index = new DeploymentIndex();
+
+        assertNull(index.getEntry(IndexedService.class));
+        assertTrue(index.mayHaveClientInjectionPoints(IndexedService.class));
+        assertNull(index.getTransformMethods(TransformRegistryTest.ItemTransforms.class));
+    }
+
+    public void test_indexed() throws IOException {
+        DeploymentIndex index = readIndex(
+                "service\t" + IndexedService.class.getName() + "\tIndexed\n" +
+                "operation\t" + IndexedService.class.getName() + "\tlookup\tjava.lang.String\n" +
+                "transformer\t" + ITEM_TRANSFORMS + "\n" +
+                "transform\t" + ITEM_TRANSFORMS + "\treadXML\tjava.lang.String\turn:item:v1:xml\t" + TransformRegistryTest.Item.class.getName() + "\n");
+
+        assertEquals("Indexed", index.getEntry(IndexedService.class).getServiceName());
+        assertFalse(index.getEntry(IndexedService.class).isTransformer());
+        assertFalse(index.mayHaveClientInjectionPoints(IndexedService.class));
+
+        // Indexed root, but not listed...
+        assertNotNull(index.getEntry(DeploymentIndexTest.class));
+        assertNull(index.getEntry(DeploymentIndexTest.class).getServiceName());
+
+        List<Method> transformMethods = index.getTransformMethods(TransformRegistryTest.ItemTransforms.class);
+        assertEquals(1, transformMethods.size());
+        assertEquals("readXML", transformMethods.get(0).getName());
+    }
+
+    public void test_stale_entry() throws IOException {
+        DeploymentIndex index = readIndex(
+                "transformer\t" + ITEM_TRANSFORMS + "\n" +
+                "transform\t" + ITEM_TRANSFORMS + "\tremoved\tjava.lang.String\turn:a\turn:b\n");
+
+        // Falls back to reflection...
+        assertNull(index.getTransformMethods(TransformRegistryTest.ItemTransforms.class));
+    }
+
+    public void test_client_injection_points() throws IOException {
+        DeploymentIndex index = readIndex("client\t" + IndexedService.class.getName() + "\tclient\tjava.lang.Runnable\tRunnable\n");
+
+        assertTrue(index.mayHaveClientInjectionPoints(IndexedService.class));
+        assertTrue(index.mayHaveClientInjectionPoints(IndexedSubService.class));
+    }
+
+    private DeploymentIndex readIndex(String records) throws IOException {
+        DeploymentIndex index = new DeploymentIndex();
+        String root = DeploymentIndexTest.class.getProtectionDomain().getCodeSource().getLocation().toExternalForm();
+
+        index.read(root, new StringReader("# SwitchYard CDI deployment index v1\n" + records));
+        return index;
+    }
+
+    public static class IndexedService {
+        public String lookup(String key) {
+            return key;
+        }
+    }
+
+    public static class IndexedSubService extends IndexedService {
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import junit.framework.TestCase;
+import org.switchyard.cdi.transform.From;
+import org.switchyard.cdi.transform.TransformRegistryScaling;
+
+import javax.inject.Inject;
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Synthetic large deployment test.
+ * <p/>
+ * Checks the deploy-time structures are keyed correctly, for deployments of up to
+ * {@link #LARGE} services.  Deployment timings are measured by the DeploymentBenchmark,
+ * in the benchmarks module.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class DeploymentScalingTest extends TestCase {
+
+    private static final int LARGE = 16000;
+
+    public void test_client_proxy_keying() {
+        SyntheticDeployment deployment = new SyntheticDeployment()
+                .addClientBean(OrderClient.class)
+                .addClientBean(InvoiceClient.class);
+
+        List<ClientProxyBean> proxyBeans = deployment.deploy(new ServiceDeployer());
+
+        // One proxy bean per (service, interface)...
+        Set<String> keys = new HashSet<String>();
+        for(ClientProxyBean proxyBean : proxyBeans) {
+            keys.add(proxyBean.getServiceQName().getLocalPart() + "/" + proxyBean.getBeanClass().getSimpleName());
+        }
+        assertEquals(3, proxyBeans.size());
+        assertEquals(3, keys.size());
+        assertTrue(keys.contains("A/ScaledService"));
+        assertTrue(keys.contains("B/ScaledService"));
+        assertTrue(keys.contains("A/OtherService"));
+    }
+
+    public void test_large_deployment() throws NoSuchFieldException {
+        SyntheticDeployment deployment = new SyntheticDeployment();
+
+        for(int i = 0; i < LARGE; i++) {
+            // Two injection points for each service...
+            deployment.addClientBean(ScaledClient.class, ScaledClient.class.getDeclaredField("service"), "Service" + i);
+            deployment.addClientBean(ScaledClient.class, ScaledClient.class.getDeclaredField("service"), "Service" + i);
+        }
+
+        List<ClientProxyBean> proxyBeans = deployment.deploy(new ServiceDeployer());
+
+        // One proxy bean per service, in deployment order...
+        assertEquals(LARGE, proxyBeans.size());
+        for(int i = 0; i < LARGE; i++) {
+            assertEquals("Service" + i, proxyBeans.get(i).getServiceQName().getLocalPart());
+            assertSame(ScaledService.class, proxyBeans.get(i).getBeanClass());
+        }
+    }
+
+    public void test_parallel_analysis() throws NoSuchFieldException {
+        SyntheticDeployment deployment = new SyntheticDeployment();
+
+        // Enough beans for 4 analysis threads, with repeated injection points across the chunks...
+        for(int i = 0; i < 1000; i++) {
+            deployment.addClientBean(OrderClient.class);
+            deployment.addClientBean(InvoiceClient.class);
+            deployment.addClientBean(ScaledClient.class, ScaledClient.class.getDeclaredField("service"), "Service" + (i % 100), "Service" + i);
+        }
+
+        ServiceDeployer serialDeployer = new ServiceDeployer();
+        serialDeployer.setMaxAnalysisThreads(1);
+        ServiceDeployer parallelDeployer = new ServiceDeployer();
+        parallelDeployer.setMaxAnalysisThreads(4);
+
+        List<String> serialKeys = toKeys(deployment.deploy(serialDeployer));
+        List<String> parallelKeys = toKeys(deployment.deploy(parallelDeployer));
+
+        assertEquals(3 + 1000, serialKeys.size());
+        assertEquals(serialKeys, parallelKeys);
+    }
+
+    public void test_create_client_proxy_bean() {
+        ServiceDeployer deployer = new ServiceDeployer();
+
+        for(int i = 0; i < LARGE; i++) {
+            assertNotNull(deployer.createClientProxyBean(new QName("Service" + i), ScaledService.class, null));
+            assertNotNull(deployer.createClientProxyBean(new QName("Service" + i), OtherService.class, null));
+        }
+        // Every injection point after the first one, for the same service and interface...
+        for(int i = 0; i < LARGE; i++) {
+            assertNull(deployer.createClientProxyBean(new QName("Service" + i), ScaledService.class, null));
+            assertNull(deployer.createClientProxyBean(new QName("Service" + i), OtherService.class, null));
+        }
+    }
+
+    public void test_transform_registry() {
+        TransformRegistryScaling.registerAndLookup("urn:scale:" + LARGE, LARGE, ScaledTransforms.class);
+    }
+
+    private static List<String> toKeys(List<ClientProxyBean> proxyBeans) {
+        List<String> keys = new ArrayList<String>();
+        for(ClientProxyBean proxyBean : proxyBeans) {
+            keys.add(proxyBean.getServiceQName() + "/" + proxyBean.getBeanClass().getName());
+        }
+        return keys;
+    }
+
+    public interface ScaledService {
+        String lookup(String key);
+    }
+
+    public interface OtherService {
+        String lookup(String key);
+    }
+
+    public static class ScaledClient {
+        @Inject @Service
+        private ScaledService service;
+    }
+
+    public static class OrderClient {
+        @Inject @Service("A")
+        private ScaledService a;
+        @Inject @Service("A")
+        private ScaledService a2;
+        @Inject @Service("B")
+        private ScaledService b;
+        @Inject @Service("A")
+        private OtherService aOther;
+    }
+
+    public static class InvoiceClient {
+        @Inject @Service("A")
+        private ScaledService a;
+    }
+
+    public static class ScaledTransforms {
+        public String transform(@From String in) {
+            return in;
+        }
+    }
+}
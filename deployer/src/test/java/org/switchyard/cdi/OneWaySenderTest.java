@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class OneWaySenderTest extends TestCase {
+
+    public void test_sends_on_sender_thread() throws Exception {
+        OneWaySender sender = new OneWaySender();
+        ThreadRecorder send = new ThreadRecorder(null);
+
+        try {
+            sender.execute(send);
+            assertTrue(send.done.await(5, TimeUnit.SECONDS));
+            assertEquals("SwitchYard-CDI-OneWaySender", send.thread.get().getName());
+        } finally {
+            sender.shutdown();
+        }
+    }
+
+    public void test_queue_full_sends_on_caller() throws Exception {
+        OneWaySender sender = new OneWaySender(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadRecorder blocked = new ThreadRecorder(release);
+        ThreadRecorder queued = new ThreadRecorder(null);
+        ThreadRecorder overflow = new ThreadRecorder(null);
+
+        try {
+            sender.execute(blocked);
+            assertTrue(blocked.started.await(5, TimeUnit.SECONDS));
+            sender.execute(queued);
+            sender.execute(overflow);
+
+            // Sent on the caller thread, before execute returned...
+            assertSame(Thread.currentThread(), overflow.thread.get());
+            release.countDown();
+            assertTrue(queued.done.await(5, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), queued.thread.get());
+        } finally {
+            release.countDown();
+            sender.shutdown();
+        }
+    }
+
+    public void test_shutdown_sends_on_caller() throws Exception {
+        OneWaySender sender = new OneWaySender();
+        ThreadRecorder send = new ThreadRecorder(null);
+
+        sender.shutdown();
+        sender.execute(send);
+        assertSame(Thread.currentThread(), send.thread.get());
+    }
+
+    private static class ThreadRecorder implements Runnable {
+
+        private final CountDownLatch release;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+        private ThreadRecorder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        public void run() {
+            thread.set(Thread.currentThread());
+            started.countDown();
+            try {
+                if(release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
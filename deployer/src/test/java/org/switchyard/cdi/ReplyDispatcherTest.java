@@ -0,0 +1,306 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import junit.framework.TestCase;
+import org.switchyard.Exchange;
+import org.switchyard.Message;
+
+import javax.xml.namespace.QName;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class ReplyDispatcherTest extends TestCase {
+
+    private static final QName SERVICE = new QName("urn:test", "ProductService");
+
+    private ReplyDispatcher dispatcher = new ReplyDispatcher();
+
+    public void test_response() throws Exception {
+        Exchange exchange = newExchange("ABCD");
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 0);
+
+        assertFalse(responseFuture.isDone());
+        dispatcher.handleMessage(exchange);
+        assertTrue(responseFuture.isDone());
+        assertEquals("ABCD", responseFuture.get());
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    public void test_completion_stage() throws Exception {
+        Exchange exchange = newExchange("ABCD");
+        CompletionStage<Integer> length = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 0).thenApply(response -> ((String) response).length());
+
+        assertFalse(length.toCompletableFuture().isDone());
+        dispatcher.handleMessage(exchange);
+        assertEquals(4, length.toCompletableFuture().join().intValue());
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    public void test_join_honors_operation_timeout() throws Exception {
+        ResponseFuture responseFuture = dispatcher.expectResponse(newExchange("ABCD"), SERVICE, "getProduct", 50);
+        CompletableFuture<Object> dependent = responseFuture.thenApply(response -> response);
+
+        try {
+            responseFuture.join();
+            fail("Expected CompletionException.");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof ServiceTimeoutException);
+        }
+        assertTrue(dependent.isCompletedExceptionally());
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    public void test_reply_never_arrives() throws Exception {
+        ResponseFuture responseFuture = dispatcher.expectResponse(newExchange("ABCD"), SERVICE, "getProduct", 50);
+
+        try {
+            responseFuture.awaitResponse();
+            fail("Expected ServiceTimeoutException.");
+        } catch (ServiceTimeoutException e) {
+            // expected
+        }
+        assertTrue(responseFuture.isDone());
+        assertEquals(0, dispatcher.getPendingCount());
+
+        try {
+            responseFuture.get();
+            fail("Expected ExecutionException.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ServiceTimeoutException);
+        }
+    }
+
+    public void test_get_honors_operation_timeout() throws Exception {
+        ResponseFuture responseFuture = dispatcher.expectResponse(newExchange("ABCD"), SERVICE, "getProduct", 50);
+        long start = System.nanoTime();
+
+        try {
+            responseFuture.get(1, TimeUnit.MINUTES);
+            fail("Expected ExecutionException.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ServiceTimeoutException);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    public void test_get_caller_timeout() throws Exception {
+        Exchange exchange = newExchange("ABCD");
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 0);
+
+        try {
+            responseFuture.get(20, TimeUnit.MILLISECONDS);
+            fail("Expected TimeoutException.");
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        // Still waiting on the response...
+        assertEquals(1, dispatcher.getPendingCount());
+        dispatcher.handleMessage(exchange);
+        assertEquals("ABCD", responseFuture.get(20, TimeUnit.MILLISECONDS));
+    }
+
+    public void test_unobserved_slot_expires() throws Exception {
+        Exchange exchange = newExchange("ABCD");
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 10);
+
+        Thread.sleep(50);
+
+        // Purged by the next send...
+        dispatcher.expectResponse(newExchange("EFGH"), SERVICE, "getProduct", 0);
+        assertEquals(1, dispatcher.getPendingCount());
+        assertTrue(responseFuture.isDone());
+
+        // A late response is ignored...
+        dispatcher.handleMessage(exchange);
+        try {
+            responseFuture.get();
+            fail("Expected ExecutionException.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ServiceTimeoutException);
+        }
+    }
+
+    public void test_discard() throws Exception {
+        Exchange exchange = newExchange("ABCD");
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 0);
+
+        // The exchange was never sent...
+        dispatcher.discard(exchange);
+        assertEquals(0, dispatcher.getPendingCount());
+
+        dispatcher.handleMessage(exchange);
+        assertFalse(responseFuture.isDone());
+    }
+
+    public void test_fault() throws Exception {
+        IllegalArgumentException failure = new IllegalArgumentException("Unknown product.");
+        Exchange exchange = newExchange(failure);
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 0);
+
+        dispatcher.handleFault(exchange);
+        assertTrue(responseFuture.isCompletedExceptionally());
+        assertEquals(0, dispatcher.getPendingCount());
+        try {
+            responseFuture.awaitResponse();
+            fail("Expected ServiceFaultException.");
+        } catch (ServiceFaultException e) {
+            assertEquals("getProduct", e.getOperationName());
+            assertSame(failure, e.getFault());
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    public void test_non_exception_fault() throws Exception {
+        Exchange exchange = newExchange("<fault>Unknown product.</fault>");
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 0);
+
+        dispatcher.handleFault(exchange);
+        try {
+            responseFuture.get();
+            fail("Expected ExecutionException.");
+        } catch (ExecutionException e) {
+            ServiceFaultException faultException = (ServiceFaultException) e.getCause();
+            assertEquals("<fault>Unknown product.</fault>", faultException.getFault());
+            assertNull(faultException.getCause());
+        }
+    }
+
+    public void test_timeout_fault() throws Exception {
+        Exchange exchange = newExchange(new ServiceTimeoutException(SERVICE, "getProduct", 50));
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 50);
+
+        // The provider skipped the invocation...
+        dispatcher.handleFault(exchange);
+        assertTrue(responseFuture.isDone());
+        assertEquals(0, dispatcher.getPendingCount());
+        try {
+            responseFuture.awaitResponse();
+            fail("Expected ServiceTimeoutException.");
+        } catch (ServiceTimeoutException e) {
+            assertEquals("getProduct", e.getOperationName());
+        }
+    }
+
+    public void test_cancel() throws Exception {
+        Exchange exchange = newExchange("ABCD");
+        ResponseFuture responseFuture = dispatcher.expectResponse(exchange, SERVICE, "getProduct", 0);
+
+        assertTrue(responseFuture.cancel(false));
+        assertTrue(responseFuture.isCancelled());
+        assertEquals(0, dispatcher.getPendingCount());
+        dispatcher.handleMessage(exchange);
+        assertFalse(responseFuture.cancel(false));
+    }
+
+    public void test_concurrent_correlation() throws Exception {
+        final int count = 4000;
+        final List<Exchange> exchanges = new ArrayList<Exchange>();
+        List<ResponseFuture> responseFutures = new ArrayList<ResponseFuture>();
+
+        for(int i = 0; i < count; i++) {
+            Exchange exchange = newExchange("response-" + i);
+            exchanges.add(exchange);
+            responseFutures.add(dispatcher.expectResponse(exchange, SERVICE, "getProduct", (i % 2 == 0 ? 0 : 60000)));
+        }
+
+        // Responses arrive on multiple threads, out of order...
+        Collections.shuffle(exchanges);
+        ExecutorService responders = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> responses = new ArrayList<Future<?>>();
+            for(final Exchange exchange : exchanges) {
+                responses.add(responders.submit(new Runnable() {
+                    public void run() {
+                        try {
+                            dispatcher.handleMessage(exchange);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }));
+            }
+            for(Future<?> response : responses) {
+                response.get();
+            }
+        } finally {
+            responders.shutdown();
+        }
+
+        for(int i = 0; i < count; i++) {
+            assertEquals("response-" + i, responseFutures.get(i).get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    private static Exchange newExchange(final Object responseContent) {
+        final Message message = (Message) Proxy.newProxyInstance(ReplyDispatcherTest.class.getClassLoader(), new Class[] {Message.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("getContent")) {
+                    return responseContent;
+                }
+                return invokeObjectMethod(proxy, method, args);
+            }
+        });
+
+        return (Exchange) Proxy.newProxyInstance(ReplyDispatcherTest.class.getClassLoader(), new Class[] {Exchange.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("getMessage")) {
+                    return message;
+                }
+                return invokeObjectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        String methodName = method.getName();
+
+        if(methodName.equals("equals")) {
+            return (proxy == args[0]);
+        } else if(methodName.equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if(methodName.equals("toString")) {
+            return "Exchange@" + System.identityHashCode(proxy);
+        }
+        throw new UnsupportedOperationException(method.toString());
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi;
+
+import org.switchyard.cdi.transform.TransformRegistry;
+
+import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.util.AnnotationLiteral;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Synthetic CDI deployment, for driving the {@link ServiceDeployer} without a container.
+ * <p/>
+ * Only supports client beans (no {@link Service} beans), as service beans need a
+ * SwitchYard domain.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class SyntheticDeployment {
+
+    private final Set<Bean<?>> beans = new LinkedHashSet<Bean<?>>();
+    private final TransformRegistry transformRegistry = new TransformRegistry();
+    private final Bean<?> transformRegistryBean = newBean(TransformRegistry.class, Collections.<InjectionPoint>emptySet());
+
+    /**
+     * Add a client bean with a {@link Service} injection point for each of the supplied service names.
+     * @param beanClass The client bean class.
+     * @param field The injection point field.  Its type is the service interface.
+     * @param serviceNames The service names.
+     * @return This deployment.
+     */
+    public SyntheticDeployment addClientBean(Class<?> beanClass, Field field, String... serviceNames) {
+        Set<InjectionPoint> injectionPoints = new HashSet<InjectionPoint>();
+
+        for(String serviceName : serviceNames) {
+            Set<Annotation> qualifiers = new HashSet<Annotation>();
+            qualifiers.add(new ServiceLiteral(serviceName));
+            injectionPoints.add(newInjectionPoint(field, qualifiers));
+        }
+        beans.add(newBean(beanClass, injectionPoints));
+
+        return this;
+    }
+
+    /**
+     * Add a client bean for the {@link Service} annotated fields of the supplied class.
+     * @param beanClass The client bean class.
+     * @return This deployment.
+     */
+    public SyntheticDeployment addClientBean(Class<?> beanClass) {
+        Set<InjectionPoint> injectionPoints = new HashSet<InjectionPoint>();
+
+        for(Field field : beanClass.getDeclaredFields()) {
+            Service service = field.getAnnotation(Service.class);
+            if(service != null) {
+                Set<Annotation> qualifiers = new HashSet<Annotation>();
+                qualifiers.add(service);
+                injectionPoints.add(newInjectionPoint(field, qualifiers));
+            }
+        }
+        beans.add(newBean(beanClass, injectionPoints));
+
+        return this;
+    }
+
+    public int getBeanCount() {
+        return beans.size();
+    }
+
+    /**
+     * Run the {@link ServiceDeployer} bean discovery phase on the deployment.
+     * @param deployer The deployer.
+     * @return The client proxy beans added by the deployer, in the order they were added.
+     */
+    public List<ClientProxyBean> deploy(ServiceDeployer deployer) {
+        final List<ClientProxyBean> addedBeans = new ArrayList<ClientProxyBean>();
+
+        AfterBeanDiscovery abd = newProxy(AfterBeanDiscovery.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("addBean")) {
+                    addedBeans.add((ClientProxyBean) args[0]);
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.toString());
+            }
+        });
+        BeanManager beanManager = newProxy(BeanManager.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+
+                if(methodName.equals("getBeans")) {
+                    if(args[0] == TransformRegistry.class) {
+                        return Collections.singleton(transformRegistryBean);
+                    }
+                    return beans;
+                } else if(methodName.equals("createCreationalContext")) {
+                    return null;
+                } else if(methodName.equals("getReference")) {
+                    return transformRegistry;
+                }
+                throw new UnsupportedOperationException(method.toString());
+            }
+        });
+
+        deployer.afterBeanDiscovery(abd, beanManager);
+
+        return addedBeans;
+    }
+
+    private static Bean<?> newBean(final Class<?> beanClass, final Set<InjectionPoint> injectionPoints) {
+        return newProxy(Bean.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+
+                if(methodName.equals("getBeanClass")) {
+                    return beanClass;
+                } else if(methodName.equals("getInjectionPoints")) {
+                    return injectionPoints;
+                }
+                return invokeObjectMethod(proxy, method, args, "Bean[" + beanClass.getName() + "]");
+            }
+        });
+    }
+
+    private static InjectionPoint newInjectionPoint(final Field field, final Set<Annotation> qualifiers) {
+        return newProxy(InjectionPoint.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+
+                if(methodName.equals("getMember")) {
+                    return field;
+                } else if(methodName.equals("getQualifiers")) {
+                    return qualifiers;
+                } else if(methodName.equals("getType")) {
+                    return field.getGenericType();
+                }
+                return invokeObjectMethod(proxy, method, args, "InjectionPoint[" + field + "]");
+            }
+        });
+    }
+
+    private static Object invokeObjectMethod(Object proxy, Method method, Object[] args, String toString) {
+        String methodName = method.getName();
+
+        if(methodName.equals("equals")) {
+            return (proxy == args[0]);
+        } else if(methodName.equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if(methodName.equals("toString")) {
+            return toString;
+        }
+        throw new UnsupportedOperationException(method.toString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SyntheticDeployment.class.getClassLoader(), new Class[] {type}, handler);
+    }
+
+    private static class ServiceLiteral extends AnnotationLiteral<Service> implements Service {
+
+        private final String value;
+
+        private ServiceLiteral(String value) {
+            this.value = value;
+        }
+
+        public String value() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.accepts;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.*;
+import org.switchyard.cdi.AbstractCDITest;
+import org.switchyard.cdi.BeanServiceMetadata;
+import org.switchyard.cdi.transform.PayloadSpec;
+import org.switchyard.internal.ServiceDomains;
+
+import javax.xml.namespace.QName;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class AcceptsTransformTest extends AbstractCDITest {
+
+    @Test
+    public void test_accepts() {
+        Assert.assertEquals("item:a", send("describe", "urn:accepts:item:xml", "<item>a</item>"));
+    }
+
+    @Test
+    public void test_multi_arg() {
+        // Each arg is transformed from ItemCode to Item...
+        Assert.assertEquals("A,B", send("join", null, new Object[] {new ItemCode("a"), new ItemCode("b")}));
+        // No transform required for the first arg...
+        Assert.assertEquals("a,B", send("join", null, new Object[] {new Item("a"), new ItemCode("b")}));
+    }
+
+    private Object send(String operationName, String inPayloadSpec, Object content) {
+        MockHandler responseConsumer = new MockHandler();
+        Exchange exchange = ServiceDomains.getDomain().createExchange(new QName("AcceptsItemService"), ExchangePattern.IN_OUT, responseConsumer);
+
+        BeanServiceMetadata.setOperationName(exchange, operationName);
+        if(inPayloadSpec != null) {
+            PayloadSpec.setInPayloadSpec(exchange, inPayloadSpec);
+        }
+
+        Message inMessage = MessageBuilder.newInstance().buildMessage();
+        inMessage.setContent(content);
+        exchange.send(inMessage);
+
+        // wait, since this is async
+        responseConsumer.waitForMessage();
+        return responseConsumer._messages.poll().getMessage().getContent();
+    }
+}
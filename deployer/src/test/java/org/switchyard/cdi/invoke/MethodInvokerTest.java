@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.invoke;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class MethodInvokerTest extends TestCase {
+
+    private OrderService orderService = new OrderService();
+
+    public void test_invoke() throws Exception {
+        MethodInvoker invoker = new MethodInvoker(OrderService.class.getMethod("total", String.class, int.class));
+
+        assertEquals("ABCD:3", invoker.invoke(orderService, new Object[] {"ABCD", 3}));
+    }
+
+    public void test_invokeSingle() throws Exception {
+        MethodInvoker invoker = new MethodInvoker(OrderService.class.getMethod("status", String.class));
+
+        assertEquals("D123:OK", invoker.invokeSingle(orderService, "D123"));
+        assertEquals("D123:OK", invoker.invoke(orderService, new Object[] {"D123"}));
+    }
+
+    public void test_no_args() throws Exception {
+        MethodInvoker invoker = new MethodInvoker(OrderService.class.getMethod("count"));
+
+        assertEquals(2, invoker.invoke(orderService, new Object[0]));
+        // Proxies pass null for no args...
+        assertEquals(2, invoker.invoke(orderService, null));
+    }
+
+    public void test_void() throws Exception {
+        MethodInvoker invoker = new MethodInvoker(OrderService.class.getMethod("cancel", String.class));
+
+        assertNull(invoker.invokeSingle(orderService, "D123"));
+        assertEquals("D123", orderService.cancelled);
+    }
+
+    public void test_exception_not_wrapped() throws Exception {
+        MethodInvoker invoker = new MethodInvoker(OrderService.class.getMethod("fail", String.class));
+
+        try {
+            invoker.invokeSingle(orderService, "D123");
+            fail("Expected IOException.");
+        } catch (IOException e) {
+            assertEquals("D123", e.getMessage());
+        }
+    }
+
+    public void test_non_public_class() throws Exception {
+        MethodInvoker invoker = new MethodInvoker(PackageOrderService.class.getMethod("status", String.class));
+
+        assertEquals("D123:PENDING", invoker.invokeSingle(new PackageOrderService(), "D123"));
+    }
+
+    public void test_wrong_arg_count() throws Exception {
+        MethodInvoker invoker = new MethodInvoker(OrderService.class.getMethod("total", String.class, int.class));
+
+        try {
+            invoker.invokeSingle(orderService, "ABCD");
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public static class OrderService {
+
+        private String cancelled;
+
+        public String total(String productId, int quantity) {
+            return productId + ":" + quantity;
+        }
+
+        public String status(String orderId) {
+            return orderId + ":OK";
+        }
+
+        public int count() {
+            return 2;
+        }
+
+        public void cancel(String orderId) {
+            cancelled = orderId;
+        }
+
+        public String fail(String orderId) throws IOException {
+            throw new IOException(orderId);
+        }
+    }
+
+    static class PackageOrderService {
+
+        public String status(String orderId) {
+            return orderId + ":PENDING";
+        }
+    }
+}
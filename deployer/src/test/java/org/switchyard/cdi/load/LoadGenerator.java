@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-threaded load generator.
+ * <p/>
+ * Drives a {@link LoadTask} from a number of threads, in one of two modes:
+ * <ul>
+ *     <li>{@link Mode#CLOSED_LOOP}: each thread calls the task back to back.  Latencies are
+ *     corrected for coordinated omission using the mean latency seen during the warm up
+ *     as the expected interval, so a stall is also charged to the calls it held up.</li>
+ *     <li>{@link Mode#OPEN_LOOP}: calls are scheduled at a fixed total arrival rate, and
+ *     latency is measured from the scheduled start, not the actual start.  Calls held up
+ *     behind a slow call are charged the time they spent waiting.</li>
+ * </ul>
+ * Throughput is measured over the real interval, from the start (scheduled start, for
+ * {@link Mode#OPEN_LOOP}) of the first measured call to the end of the last one.  A task
+ * that can't keep up with the open loop schedule shows a throughput below the target rate.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class LoadGenerator {
+
+    public enum Mode { CLOSED_LOOP, OPEN_LOOP }
+
+    private final Mode mode;
+    private final int threads;
+    private final long durationMillis;
+    private final long warmupMillis;
+    private final double targetRate;
+
+    /**
+     * Closed loop load generator.
+     * @param threads The number of concurrent threads.
+     * @param durationMillis The measured run duration.
+     * @param warmupMillis The warm up duration, before measuring.
+     */
+    public LoadGenerator(int threads, long durationMillis, long warmupMillis) {
+        this(Mode.CLOSED_LOOP, threads, durationMillis, warmupMillis, 0);
+    }
+
+    /**
+     * Load generator.
+     * @param mode The load mode.
+     * @param threads The number of concurrent threads.
+     * @param durationMillis The measured run duration.
+     * @param warmupMillis The warm up duration, before measuring.
+     * @param targetRate The total arrival rate (calls per second) for {@link Mode#OPEN_LOOP}.
+     */
+    public LoadGenerator(Mode mode, int threads, long durationMillis, long warmupMillis, double targetRate) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Invalid thread count '" + threads + "'.");
+        }
+        if(mode == Mode.OPEN_LOOP && targetRate <= 0) {
+            throw new IllegalArgumentException("Open loop load requires a target rate.");
+        }
+        this.mode = mode;
+        this.threads = threads;
+        this.durationMillis = durationMillis;
+        this.warmupMillis = warmupMillis;
+        this.targetRate = targetRate;
+    }
+
+    /**
+     * Run the load.
+     * @param name The name of the run, for the report.
+     * @param task The task to call.
+     * @return The load report.
+     * @throws InterruptedException Interrupted waiting on the load threads.
+     */
+    public LoadReport run(String name, final LoadTask task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final long intervalNanos = (mode == Mode.OPEN_LOOP ? (long) (TimeUnit.SECONDS.toNanos(1) * threads / targetRate) : 0);
+        final long[] startTime = new long[1];
+        List<LoadThread> loadThreads = new ArrayList<LoadThread>(threads);
+
+        for(int i = 0; i < threads; i++) {
+            // Stagger the open loop schedules across the threads...
+            final long offsetNanos = intervalNanos * i / threads;
+            LoadThread loadThread = new LoadThread("SwitchYard-CDI-Load-" + (i + 1)) {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long runStart = startTime[0];
+                        long measureStart = runStart + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+                        long measureEnd = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+                        if(mode == Mode.OPEN_LOOP) {
+                            runOpenLoop(task, runStart + offsetNanos, intervalNanos, measureStart, measureEnd, this);
+                        } else {
+                            runClosedLoop(task, measureStart, measureEnd, this);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            loadThread.setDaemon(true);
+            loadThread.start();
+            loadThreads.add(loadThread);
+        }
+
+        startTime[0] = System.nanoTime();
+        start.countDown();
+        done.await();
+
+        Histogram histogram = new Histogram(3);
+        long operations = 0;
+        long errors = 0;
+        long firstStart = Long.MAX_VALUE;
+        long lastEnd = Long.MIN_VALUE;
+        for(LoadThread loadThread : loadThreads) {
+            histogram.add(loadThread.histogram);
+            operations += loadThread.operations;
+            errors += loadThread.errors;
+            if(loadThread.operations > 0) {
+                firstStart = Math.min(firstStart, loadThread.firstStart);
+                lastEnd = Math.max(lastEnd, loadThread.lastEnd);
+            }
+        }
+
+        long elapsedNanos = (operations > 0 ? Math.max(1, lastEnd - firstStart) : TimeUnit.MILLISECONDS.toNanos(durationMillis));
+        return new LoadReport(name, mode, threads, operations, errors, elapsedNanos, histogram);
+    }
+
+    private static void runClosedLoop(LoadTask task, long measureStart, long measureEnd, LoadThread thread) {
+        long warmupCalls = 0;
+        long warmupNanos = 0;
+        long now = System.nanoTime();
+
+        // Warm up... also gives us the expected interval between calls...
+        while(now < measureStart) {
+            call(task);
+            long end = System.nanoTime();
+            warmupNanos += end - now;
+            warmupCalls++;
+            now = end;
+        }
+
+        long expectedIntervalNanos = (warmupCalls > 0 ? warmupNanos / warmupCalls : 0);
+        while(now < measureEnd) {
+            boolean failed = !call(task);
+            long end = System.nanoTime();
+            thread.record(now, end, expectedIntervalNanos, failed);
+            now = end;
+        }
+    }
+
+    private static void runOpenLoop(LoadTask task, long scheduleStart, long intervalNanos, long measureStart, long measureEnd, LoadThread thread) {
+        for(long intended = scheduleStart; intended < measureEnd; intended += intervalNanos) {
+            long now = System.nanoTime();
+
+            while(now < intended) {
+                LockSupport.parkNanos(intended - now);
+                now = System.nanoTime();
+            }
+
+            boolean failed = !call(task);
+            if(intended >= measureStart) {
+                // Measured from the scheduled start... corrects for coordinated omission...
+                thread.record(intended, System.nanoTime(), 0, failed);
+            }
+        }
+    }
+
+    private static boolean call(LoadTask task) {
+        try {
+            task.call();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static class LoadThread extends Thread {
+        private final Histogram histogram = new Histogram(3);
+        private long operations;
+        private long errors;
+        private long firstStart;
+        private long lastEnd;
+
+        private LoadThread(String name) {
+            super(name);
+        }
+
+        /**
+         * Record a measured call.  Warm up calls are not recorded, so aren't counted as operations or errors.
+         */
+        private void record(long startNanos, long endNanos, long expectedIntervalNanos, boolean failed) {
+            // A 0 expected interval records the latency as is...
+            histogram.recordValueWithExpectedInterval(endNanos - startNanos, expectedIntervalNanos);
+            if(operations == 0) {
+                firstStart = startNanos;
+            }
+            lastEnd = endNanos;
+            operations++;
+            if(failed) {
+                errors++;
+            }
+        }
+    }
+}
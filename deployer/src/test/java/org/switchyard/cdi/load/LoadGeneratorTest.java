@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.load;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class LoadGeneratorTest extends TestCase {
+
+    public void test_closed_loop() throws InterruptedException {
+        LoadReport report = new LoadGenerator(2, 200, 50).run("closed", new LoadTask() {
+            public void call() throws InterruptedException {
+                Thread.sleep(1);
+            }
+        });
+
+        // Lower bounds only... a slow machine makes fewer, slower calls...
+        assertTrue(report.getOperations() > 0);
+        assertEquals(0, report.getErrors());
+        assertTrue(report.getLatency(50) >= 1000);
+        assertTrue(report.getLatency(99.9) <= report.getMaxLatency());
+    }
+
+    public void test_open_loop() throws InterruptedException {
+        LoadReport report = new LoadGenerator(LoadGenerator.Mode.OPEN_LOOP, 2, 500, 50, 200).run("open", new LoadTask() {
+            public void call() {
+            }
+        });
+
+        // The measured calls are fixed by the schedule (200 calls/s for 0.5s), however late they run...
+        assertEquals(100, report.getOperations());
+        // ... but can't complete faster than scheduled (99 intervals of 5ms between the first and last)...
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.getThroughput() <= 100 / 0.495);
+    }
+
+    public void test_open_loop_falls_behind() throws InterruptedException {
+        LoadReport report = new LoadGenerator(LoadGenerator.Mode.OPEN_LOOP, 1, 200, 0, 200).run("behind", new LoadTask() {
+            public void call() throws InterruptedException {
+                Thread.sleep(20);
+            }
+        });
+
+        // 40 calls scheduled over 0.2s, but they take at least 0.8s to run...
+        assertEquals(40, report.getOperations());
+        assertTrue(report.getThroughput() <= 50.0);
+    }
+
+    public void test_errors() throws InterruptedException {
+        LoadTask failingTask = new LoadTask() {
+            public void call() {
+                throw new IllegalStateException("error");
+            }
+        };
+
+        // Warm up errors are not counted...
+        LoadReport closedReport = new LoadGenerator(1, 50, 50).run("errors", failingTask);
+        assertEquals(closedReport.getOperations(), closedReport.getErrors());
+
+        LoadReport openReport = new LoadGenerator(LoadGenerator.Mode.OPEN_LOOP, 1, 50, 50, 200).run("errors", failingTask);
+        assertEquals(10, openReport.getOperations());
+        assertEquals(10, openReport.getErrors());
+    }
+
+    public void test_open_loop_requires_rate() {
+        try {
+            new LoadGenerator(LoadGenerator.Mode.OPEN_LOOP, 1, 100, 0, 0);
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Open loop load requires a target rate.", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.load;
+
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+import org.jboss.weld.environment.se.events.ContainerInitialized;
+import org.switchyard.cdi.omservice.model.OrderRequest;
+import org.switchyard.cdi.prodservice.ProductService;
+
+/**
+ * Load harness.
+ * <p/>
+ * Starts Weld (and so the ServiceDeployer) with the test services, and drives the
+ * ProductService and WithProductsOrderManagementService client proxies with a
+ * {@link LoadGenerator}.  Run from the test classpath:
+ * <pre>
+ * LoadHarness [closed|open] [threads] [seconds] [rate]
+ * </pre>
+ * The rate is the total calls per second, and is only used for open loop load.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public final class LoadHarness {
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator.Mode mode = (args.length > 0 && args[0].equalsIgnoreCase("open") ? LoadGenerator.Mode.OPEN_LOOP : LoadGenerator.Mode.CLOSED_LOOP);
+        int threads = (args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors());
+        long durationMillis = (args.length > 2 ? Long.parseLong(args[2]) * 1000 : 30000);
+        double rate = (args.length > 3 ? Double.parseDouble(args[3]) : 10000);
+        LoadGenerator loadGenerator = new LoadGenerator(mode, threads, durationMillis, Math.min(durationMillis, 10000), rate);
+
+        Weld weld = new Weld();
+        try {
+            WeldContainer container = weld.initialize();
+            container.event().select(ContainerInitialized.class).fire(new ContainerInitialized());
+
+            LoadClient client = container.instance().select(LoadClient.class).get();
+            final ProductService productService = client.getProductService();
+            final OrderManagementService orderManagementService = client.getOrderManagementService();
+
+            System.out.println(loadGenerator.run("ProductService.getProduct", new LoadTask() {
+                public void call() {
+                    productService.getProduct("ABCD");
+                }
+            }));
+            System.out.println(loadGenerator.run("WithProductsOrderManagementService.createOrder", new LoadTask() {
+                public void call() {
+                    orderManagementService.createOrder(new OrderRequest("D123", "ABCD"));
+                }
+            }));
+        } finally {
+            weld.shutdown();
+        }
+    }
+}
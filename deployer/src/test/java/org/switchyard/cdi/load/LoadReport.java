@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LoadGenerator} run report.
+ * <p/>
+ * Latencies are in microseconds.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class LoadReport {
+
+    private final String name;
+    private final LoadGenerator.Mode mode;
+    private final int threads;
+    private final long operations;
+    private final long errors;
+    private final long elapsedNanos;
+    private final Histogram histogram;
+
+    LoadReport(String name, LoadGenerator.Mode mode, int threads, long operations, long errors, long elapsedNanos, Histogram histogram) {
+        this.name = name;
+        this.mode = mode;
+        this.threads = threads;
+        this.operations = operations;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.histogram = histogram;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Get the throughput.
+     * @return Operations per second.
+     */
+    public double getThroughput() {
+        return operations * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Get the latency at the supplied percentile.
+     * @param percentile The percentile e.g. 99.9.
+     * @return The latency, in microseconds.
+     */
+    public double getLatency(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Get the max latency.
+     * @return The max latency, in microseconds.
+     */
+    public double getMaxLatency() {
+        return histogram.getMaxValue() / 1000.0;
+    }
+
+    /**
+     * Get the latency histogram, including any coordinated omission corrections.
+     * @return The histogram, in nanoseconds.
+     */
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [%s, %d threads]: %d ops, %d errors, %.1f ops/s, latency (us) p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                name, mode, threads, operations, errors, getThroughput(),
+                getLatency(50), getLatency(99), getLatency(99.9), getMaxLatency());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.localservice;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.cdi.AbstractCDITest;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class LocalInvocationTest extends AbstractCDITest {
+
+    @Test
+    public void test_invoked_directly() {
+        EchoClient client = weld.instance().select(EchoClient.class).get();
+
+        Assert.assertFalse(client.getLocalEcho().isExchangeInvocation());
+        Assert.assertTrue(client.getExchangeEcho().isExchangeInvocation());
+    }
+
+    @Test
+    public void test_matches_exchange_path() {
+        EchoClient client = weld.instance().select(EchoClient.class).get();
+
+        Assert.assertEquals("LocalEchoService: hello", client.getLocalEcho().echo("hello"));
+        Assert.assertEquals("ExchangeEchoService: hello", client.getExchangeEcho().echo("hello"));
+    }
+
+    @Test
+    public void test_exception_propagates() {
+        EchoClient client = weld.instance().select(EchoClient.class).get();
+
+        try {
+            client.getLocalEcho().fail("oops");
+            Assert.fail("Expected IllegalStateException.");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("oops", e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_timed_operation_not_bound() {
+        TimedEcho timedEcho = weld.instance().select(EchoClient.class).get().getTimedLocalEcho();
+
+        Assert.assertTrue(timedEcho.isExchangeInvocation());
+        // Untimed operations on the same proxy are still bound...
+        Assert.assertEquals("LocalEchoService: hello", timedEcho.echo("hello"));
+    }
+
+    @Test
+    public void test_metrics_recorded() throws Exception {
+        Echo localEcho = weld.instance().select(EchoClient.class).get().getLocalEcho();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName echo = new ObjectName("org.switchyard.cdi:type=OperationMetrics,service=\"LocalEchoService\",operation=\"echo\"");
+        long invocationCount = (Long) mbeanServer.getAttribute(echo, "InvocationCount");
+
+        localEcho.echo("hello");
+
+        Assert.assertEquals(invocationCount + 1, mbeanServer.getAttribute(echo, "InvocationCount"));
+        Assert.assertEquals(0L, mbeanServer.getAttribute(echo, "InFlightCount"));
+        // The caller never waits on a local invocation...
+        Assert.assertEquals(0L, mbeanServer.getAttribute(echo, "ClientWaitCount"));
+    }
+}
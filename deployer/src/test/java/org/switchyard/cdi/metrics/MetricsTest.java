@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.metrics;
+
+import junit.framework.TestCase;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.xml.namespace.QName;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class MetricsTest extends TestCase {
+
+    public void test_concurrent_recording() throws InterruptedException {
+        final OperationMetrics metrics = new OperationMetrics(new QName("ProductService"), "getProduct");
+        final CountDownLatch done = new CountDownLatch(4);
+
+        for(int i = 0; i < 4; i++) {
+            new Thread() {
+                public void run() {
+                    for(int j = 0; j < 10000; j++) {
+                        metrics.invocationCompleted(metrics.invocationStarted(), (j % 10 == 0));
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        assertEquals(40000, metrics.getInvocationCount());
+        assertEquals(4000, metrics.getErrorCount());
+        assertEquals(0, metrics.getInFlightCount());
+        assertEquals(40000, metrics.getLatencyHistogram().getCount());
+    }
+
+    public void test_histogram_buckets() {
+        assertEquals(0, LatencyHistogram.getBucket(999));
+        assertEquals(1, LatencyHistogram.getBucket(1000));
+        assertEquals(2, LatencyHistogram.getBucket(3999));
+        assertEquals(10, LatencyHistogram.getBucket(TimeUnit.MILLISECONDS.toNanos(1)));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.getBucket(Long.MAX_VALUE));
+    }
+
+    public void test_histogram_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getPercentileMicros(99));
+        assertEquals(0.0, histogram.getMeanMicros());
+
+        for(int i = 0; i < 990; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+        }
+        for(int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(16, histogram.getPercentileMicros(50));
+        assertEquals(16, histogram.getPercentileMicros(99));
+        assertEquals(16384, histogram.getPercentileMicros(99.9));
+        assertEquals(109.9, histogram.getMeanMicros(), 0.001);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    public void test_operation_metrics() {
+        OperationMetrics metrics = new OperationMetrics(new QName("ProductService"), "getProduct");
+
+        long start = metrics.invocationStarted();
+        assertEquals(1, metrics.getInFlightCount());
+        metrics.invocationCompleted(start, false);
+        metrics.invocationCompleted(metrics.invocationStarted(), true);
+        metrics.clientWaited(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(2, metrics.getInvocationCount());
+        assertEquals(0, metrics.getInFlightCount());
+        assertEquals(1, metrics.getErrorCount());
+        assertEquals(2, metrics.getLatencyHistogram().getCount());
+        assertEquals(1, metrics.getClientWaitCount());
+        assertEquals(1024, metrics.getClientWaitP99());
+
+        metrics.reset();
+        assertEquals(0, metrics.getInvocationCount());
+        assertEquals(0, metrics.getErrorCount());
+        assertEquals(0, metrics.getClientWaitCount());
+    }
+
+    public void test_transform_metrics() throws Exception {
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry();
+        TransformMetrics metrics = new TransformMetrics("urn:item:v1:xml", "org.acme.Item", "org.acme.ItemTransforms#readXML");
+
+        metrics.executed(TimeUnit.MICROSECONDS.toNanos(100), "<item>a</item>", new Object(), false);
+        metrics.executed(TimeUnit.MICROSECONDS.toNanos(300), new byte[10], "abcd", false);
+        metrics.executed(TimeUnit.MICROSECONDS.toNanos(200), new char[6], null, true);
+        metrics.cacheHit();
+
+        assertEquals(3, metrics.getInvocationCount());
+        assertEquals(1, metrics.getFailureCount());
+        assertEquals(1, metrics.getCacheHitCount());
+        assertEquals(600, metrics.getTotalLatency());
+        assertEquals(30, metrics.getTotalInputSize());
+        assertEquals(10.0, metrics.getMeanInputSize(), 0.001);
+        assertEquals(4, metrics.getTotalOutputSize());
+        assertEquals(4.0, metrics.getMeanOutputSize(), 0.001);
+
+        registry.register(mbeanServer);
+        registry.addTransformMetrics(metrics);
+
+        ObjectName objectName = MetricsRegistry.getObjectName(metrics);
+        assertEquals("urn:item:v1:xml", ObjectName.unquote(objectName.getKeyProperty("from")));
+        assertEquals(3L, mbeanServer.getAttribute(objectName, "InvocationCount"));
+        mbeanServer.invoke(objectName, "reset", null, null);
+        assertEquals(0L, metrics.getInvocationCount());
+        assertEquals(0L, metrics.getTotalInputSize());
+
+        registry.unregister();
+        assertFalse(mbeanServer.isRegistered(objectName));
+    }
+
+    public void test_registry() throws Exception {
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry();
+        QName serviceQName = new QName("urn:test", "ProductService");
+        ServiceMetrics serviceMetrics = registry.getServiceMetrics(serviceQName);
+
+        assertSame(serviceMetrics, registry.getServiceMetrics(serviceQName));
+        assertSame(serviceMetrics.getOperationMetrics("getProduct"), serviceMetrics.getOperationMetrics("getProduct"));
+
+        registry.register(mbeanServer);
+
+        // Added after registration...
+        OperationMetrics listProducts = serviceMetrics.getOperationMetrics("listProducts");
+        listProducts.invocationCompleted(listProducts.invocationStarted(), false);
+
+        ObjectName getProductName = MetricsRegistry.getObjectName(serviceMetrics.getOperationMetrics("getProduct"));
+        ObjectName listProductsName = MetricsRegistry.getObjectName(listProducts);
+        assertEquals("{urn:test}ProductService", getProductName.unquote(getProductName.getKeyProperty("service")));
+        assertTrue(mbeanServer.isRegistered(getProductName));
+        assertEquals(1L, mbeanServer.getAttribute(listProductsName, "InvocationCount"));
+
+        // A later deployment replaces the MBeans...
+        MetricsRegistry redeployed = new MetricsRegistry();
+        redeployed.getServiceMetrics(serviceQName).getOperationMetrics("listProducts");
+        redeployed.register(mbeanServer);
+        assertEquals(0L, mbeanServer.getAttribute(listProductsName, "InvocationCount"));
+
+        // Shutting down the earlier deployment leaves the later deployment's MBeans...
+        registry.unregister();
+        assertFalse(mbeanServer.isRegistered(getProductName));
+        assertTrue(mbeanServer.isRegistered(listProductsName));
+        OperationMetrics redeployedListProducts = redeployed.getServiceMetrics(serviceQName).getOperationMetrics("listProducts");
+        redeployedListProducts.invocationCompleted(redeployedListProducts.invocationStarted(), false);
+        assertEquals(1L, mbeanServer.getAttribute(listProductsName, "InvocationCount"));
+
+        redeployed.unregister();
+        assertFalse(mbeanServer.isRegistered(listProductsName));
+    }
+}
@@ -26,6 +26,7 @@ import org.milyn.Smooks;
 import org.milyn.payload.JavaResult;
 import org.milyn.payload.JavaSource;
 import org.milyn.payload.StringSource;
+import org.switchyard.cdi.Lazy;
 import org.switchyard.cdi.omservice.model.OrderRequest;
 import org.switchyard.cdi.omservice.model.OrderResponse;
 import org.switchyard.cdi.transform.From;
@@ -42,6 +43,7 @@ import javax.xml.transform.stream.StreamResult;
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 @TransformSpecifier
+@Lazy(prewarm = true)
 public class OrderModelTransforms {
 
     private Smooks readXML_V1;
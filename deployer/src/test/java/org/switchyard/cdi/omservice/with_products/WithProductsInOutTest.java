@@ -32,7 +32,6 @@ import org.switchyard.cdi.AbstractCDITest;
 import org.switchyard.cdi.BeanServiceMetadata;
 import org.switchyard.cdi.omservice.model.OrderRequest;
 import org.switchyard.cdi.omservice.model.OrderResponse;
-import org.switchyard.cdi.omservice.model.transforms.OrderModelTransforms;
 import org.switchyard.cdi.transform.PayloadSpec;
 import org.switchyard.cdi.transform.Transform;
 import org.switchyard.cdi.transform.TransformHandler;
@@ -45,7 +44,6 @@ import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
-import java.io.StringWriter;
 
 /**
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
@@ -93,21 +91,9 @@ public class WithProductsInOutTest extends AbstractCDITest {
         MockHandler responseConsumer = new MockHandler();
         DefaultHandlerChain handlerChain = new DefaultHandlerChain();
         handlerChain.addLast("transform", new TransformHandler(new TransformFactory() {
-            OrderModelTransforms orderModelXForm = new OrderModelTransforms();
             public Transform getTransform(Exchange exchange) {
-                return new Transform() {
-                    public Object execute(Object payload) {
-                        if(payload instanceof OrderResponse) {
-                            // TODO: This transform is not happening in the correct place.
-                            // Shouldn't be handling Service defined Java Objects on the client side.. too tight!!
-                            StringWriter writer = new StringWriter();
-                            orderModelXForm.writeXML_V1((OrderResponse) payload, writer);
-                            return writer.toString();
-                        } else {
-                            return payload;
-                        }
-                    }
-                };
+                // No transform... the provider returns the requested out payload spec...
+                return null;
             }
         }));
         handlerChain.addLast("consumer", responseConsumer);
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.prodservice;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.cdi.AbstractCDITest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class AsyncClientProxyTest extends AbstractCDITest {
+
+    @Test
+    public void test() throws Exception {
+        ProductServiceAsync productService = weld.instance().select(AsyncProductClient.class).get().getProductService();
+
+        Future<Product> abcd = productService.getProduct("ABCD");
+        Future<Product> efgh = productService.getProduct("EFGH");
+
+        Assert.assertEquals("ABCD", abcd.get(5, TimeUnit.SECONDS).id);
+        Assert.assertEquals("EFGH", efgh.get(5, TimeUnit.SECONDS).id);
+        Assert.assertTrue(abcd.isDone());
+    }
+
+    @Test
+    public void test_completion_stage() throws Exception {
+        ProductServiceStage productService = weld.instance().select(AsyncProductClient.class).get().getProductServiceStage();
+
+        CompletableFuture<String> abcd = productService.getProduct("ABCD").thenApply(product -> product.id).toCompletableFuture();
+
+        Assert.assertEquals("ABCD", abcd.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.prodservice;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.*;
+import org.switchyard.cdi.AbstractCDITest;
+import org.switchyard.cdi.BeanServiceMetadata;
+import org.switchyard.cdi.ExchangeDeadline;
+import org.switchyard.cdi.ServiceTimeoutException;
+import org.switchyard.cdi.transform.PayloadSpec;
+import org.switchyard.internal.ServiceDomains;
+
+import javax.xml.namespace.QName;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class ExpiredExchangeTest extends AbstractCDITest {
+
+    @Test
+    public void test_expired_exchange_faults() throws Exception {
+        FaultConsumer faultConsumer = new FaultConsumer();
+        Exchange exchange = ServiceDomains.getDomain().createExchange(new QName("ProductService"), ExchangePattern.IN_OUT, faultConsumer);
+
+        BeanServiceMetadata.setOperationName(exchange, "getProduct");
+        PayloadSpec.setInPayloadSpec(exchange, "urn:prodservice:product-id:xml");
+        // Already expired when it reaches the provider...
+        ExchangeDeadline.setTimeout(exchange, 0);
+
+        int transformInvocations = ProductIdTransforms.invocations.get();
+        Message inMessage = MessageBuilder.newInstance().buildMessage();
+        inMessage.setContent("<productId>ABCD</productId>");
+        exchange.send(inMessage);
+
+        Assert.assertTrue(faultConsumer.faulted.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(faultConsumer.fault instanceof ServiceTimeoutException);
+        Assert.assertEquals("getProduct", ((ServiceTimeoutException) faultConsumer.fault).getOperationName());
+        Assert.assertEquals(0, ((ServiceTimeoutException) faultConsumer.fault).getTimeout());
+        // Not transformed either... and only faulted once, by the transform handler...
+        Assert.assertEquals(transformInvocations, ProductIdTransforms.invocations.get());
+        Assert.assertEquals(1, faultConsumer.faultCount.get());
+    }
+
+    private static class FaultConsumer implements ExchangeHandler {
+
+        private final CountDownLatch faulted = new CountDownLatch(1);
+        private final AtomicInteger faultCount = new AtomicInteger();
+        private volatile Object fault;
+
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            Assert.fail("Expected a fault, not a response.");
+        }
+
+        public void handleFault(Exchange exchange) {
+            fault = exchange.getMessage().getContent();
+            faultCount.incrementAndGet();
+            faulted.countDown();
+        }
+    }
+}
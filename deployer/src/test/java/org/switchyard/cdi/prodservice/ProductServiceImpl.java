@@ -33,4 +33,10 @@ public class ProductServiceImpl implements ProductService {
     public Product getProduct(String productId) {
         return new Product(productId, "MacBook Pro");
     }
+
+    // Slower than its @Timeout on ProductServiceWithTimeout...
+    public Product getDiscontinuedProduct(String productId) throws InterruptedException {
+        Thread.sleep(500);
+        return new Product(productId, "PowerBook G4");
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.prodservice;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.cdi.AbstractCDITest;
+import org.switchyard.cdi.ServiceTimeoutException;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class ServiceMetricsTest extends AbstractCDITest {
+
+    @Test
+    public void test() throws Exception {
+        ProductServiceWithTimeout productService = weld.instance().select(TimeoutProductClient.class).get().getProductService();
+
+        productService.getProduct("ABCD");
+        try {
+            productService.getDiscontinuedProduct("ABCD");
+            Assert.fail("Expected ServiceTimeoutException.");
+        } catch (ServiceTimeoutException e) {
+            // expected
+        }
+
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName getProduct = new ObjectName("org.switchyard.cdi:type=OperationMetrics,service=\"ProductService\",operation=\"getProduct\"");
+        ObjectName getDiscontinuedProduct = new ObjectName("org.switchyard.cdi:type=OperationMetrics,service=\"ProductService\",operation=\"getDiscontinuedProduct\"");
+
+        Assert.assertEquals(1L, mbeanServer.getAttribute(getProduct, "InvocationCount"));
+        Assert.assertEquals(0L, mbeanServer.getAttribute(getProduct, "InFlightCount"));
+        Assert.assertEquals(0L, mbeanServer.getAttribute(getProduct, "ErrorCount"));
+        Assert.assertEquals(1L, mbeanServer.getAttribute(getProduct, "ClientWaitCount"));
+
+        // Invoked on the service, but the client stopped waiting on it...
+        Assert.assertEquals(1L, mbeanServer.getAttribute(getDiscontinuedProduct, "InvocationCount"));
+        Assert.assertEquals(1L, mbeanServer.getAttribute(getDiscontinuedProduct, "ClientWaitCount"));
+        Assert.assertTrue((Long) mbeanServer.getAttribute(getDiscontinuedProduct, "ClientWaitP50") >= 200000L);
+    }
+}
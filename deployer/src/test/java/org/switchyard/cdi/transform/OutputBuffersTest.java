@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class OutputBuffersTest extends TestCase {
+
+    public void test_char_buffer() {
+        OutputBuffers.CharBuffer buffer = OutputBuffers.takeCharBuffer(0);
+
+        for(int i = 0; i < 100; i++) {
+            buffer.write('a');
+            buffer.write("xbcx", 1, 2);
+            buffer.write(new char[] {'x', 'd', 'x'}, 1, 1);
+        }
+        assertEquals(400, buffer.size());
+        assertTrue(buffer.toString().startsWith("abcdabcd"));
+        assertEquals(400, buffer.toCharArray().length);
+
+        OutputBuffers.release(buffer);
+        OutputBuffers.CharBuffer reused = OutputBuffers.takeCharBuffer(0);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.size());
+        reused.append("ef");
+        assertEquals("ef", reused.toString());
+        OutputBuffers.release(reused);
+    }
+
+    public void test_byte_buffer() {
+        OutputBuffers.ByteBuffer buffer = OutputBuffers.takeByteBuffer(0);
+
+        for(int i = 0; i < 100; i++) {
+            buffer.write('a');
+            buffer.write(new byte[] {'x', 'b', 'c', 'x'}, 1, 2);
+        }
+        assertEquals(300, buffer.size());
+        assertTrue(new String(buffer.toByteArray()).startsWith("abcabc"));
+
+        try {
+            buffer.write(new byte[2], 1, 2);
+            fail("Expected IndexOutOfBoundsException.");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        OutputBuffers.release(buffer);
+        OutputBuffers.ByteBuffer reused = OutputBuffers.takeByteBuffer(0);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.toByteArray().length);
+        OutputBuffers.release(reused);
+    }
+
+    public void test_large_buffers_not_retained() {
+        OutputBuffers.ByteBuffer buffer = OutputBuffers.takeByteBuffer(0);
+
+        buffer.write(new byte[OutputBuffers.MAX_RETAINED_CAPACITY + 1], 0, OutputBuffers.MAX_RETAINED_CAPACITY + 1);
+        OutputBuffers.release(buffer);
+        assertNotSame(buffer, OutputBuffers.takeByteBuffer(0));
+    }
+}
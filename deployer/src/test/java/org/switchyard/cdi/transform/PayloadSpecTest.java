@@ -53,4 +53,40 @@ public class PayloadSpecTest extends TestCase {
         assertTrue(hashSet.contains(a2));
         assertTrue(hashSet.contains(b));
     }
+
+    public void test_interning() {
+        assertSame(PayloadSpec.declare("a"), PayloadSpec.declare("a"));
+        assertSame(PayloadSpec.declare("a"), PayloadSpec.valueOf("a"));
+        assertSame(PayloadSpec.toPayloadSpec(String.class), PayloadSpec.valueOf(String.class.getName()));
+        assertSame(PayloadSpec.toPayloadSpec("b", String.class), PayloadSpec.valueOf("b"));
+        assertEquals(new PayloadSpec("a").getId(), new PayloadSpec("a").getId());
+        assertEquals(new PayloadSpec("a").getId(), PayloadSpec.valueOf("a").getId());
+        assertFalse(PayloadSpec.valueOf("a").getId() == PayloadSpec.valueOf("b").getId());
+    }
+
+    public void test_java_type_specs() {
+        PayloadSpec stringSpec = PayloadSpec.toPayloadSpec(String.class);
+
+        assertSame(stringSpec, PayloadSpec.toPayloadSpec(String.class));
+        assertSame(stringSpec, PayloadSpec.toPayloadSpec("", String.class));
+        assertSame(stringSpec, PayloadSpec.getDeclared(String.class.getName()));
+    }
+
+    public void test_undeclared() {
+        PayloadSpec undeclared = PayloadSpec.valueOf("urn:test:undeclared:" + System.nanoTime());
+
+        assertFalse(undeclared.isDeclared());
+        // Resolving doesn't declare...
+        assertFalse(PayloadSpec.valueOf(undeclared.getValue()).isDeclared());
+        assertNotSame(undeclared, PayloadSpec.valueOf(undeclared.getValue()));
+        assertEquals(undeclared, PayloadSpec.valueOf(undeclared.getValue()));
+
+        // Still equal to (and hashes the same as) the declared instance, once declared...
+        PayloadSpec declared = PayloadSpec.declare(undeclared.getValue());
+        assertTrue(declared.isDeclared());
+        assertEquals(undeclared, declared);
+        assertEquals(declared, undeclared);
+        assertEquals(declared.hashCode(), undeclared.hashCode());
+        assertFalse(undeclared.equals(PayloadSpec.declare("a")));
+    }
 }
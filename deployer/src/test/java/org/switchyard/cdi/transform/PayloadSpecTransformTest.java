@@ -0,0 +1,196 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class PayloadSpecTransformTest extends TestCase {
+
+    private TransformRegistry registry = new TransformRegistry();
+
+    protected void setUp() throws Exception {
+        registry.add(new StreamTransforms());
+    }
+
+    public void test_Reader_input() {
+        Transform transform = registry.get(new PayloadSpec("urn:a:reader"), new PayloadSpec("java.lang.String"));
+
+        assertEquals("abc", transform.execute("abc"));
+        assertEquals("abc", transform.execute("abc".toCharArray()));
+        assertEquals("abc", transform.execute(new StringReader("abc")));
+        assertEquals("abc", transform.execute(new ByteArrayInputStream(new byte[] {'a', 'b', 'c'})));
+    }
+
+    public void test_InputStream_input_OutputStream_output() {
+        Transform transform = registry.get(new PayloadSpec("urn:a:stream"), new PayloadSpec("urn:a:bytes"));
+
+        assertEquals("abc", new String((byte[]) transform.execute("abc")));
+        assertEquals("abc", new String((byte[]) transform.execute(new byte[] {'a', 'b', 'c'})));
+    }
+
+    public void test_InputStream_input_character_payloads() throws Exception {
+        Transform transform = registry.get(new PayloadSpec("urn:a:stream"), new PayloadSpec("urn:a:bytes"));
+        StringBuilder large = new StringBuilder();
+
+        // Multi-byte chars and surrogate pairs, spanning several encoding chunks...
+        while(large.length() < 10000) {
+            large.append("a\u00e9\u20ac\ud83d\ude00");
+        }
+        byte[] expected = large.toString().getBytes("UTF-8");
+
+        assertEquals("abc", new String((byte[]) transform.execute("abc".toCharArray())));
+        assertEquals("abc", new String((byte[]) transform.execute(new StringReader("abc"))));
+        assertTrue(Arrays.equals(expected, (byte[]) transform.execute(large.toString())));
+        assertTrue(Arrays.equals(expected, (byte[]) transform.execute(large.toString().toCharArray())));
+        assertTrue(Arrays.equals(expected, (byte[]) transform.execute(new StringReader(large.toString()))));
+        assertEquals(0, ((byte[]) transform.execute("")).length);
+
+        // Bulk reads...
+        InputStream stream = new ReaderInputStream(new StringReader(large.toString()), Charset.forName("UTF-8"));
+        ByteArrayOutputStream bulkRead = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int count;
+        while((count = stream.read(buffer, 0, buffer.length)) != -1) {
+            bulkRead.write(buffer, 0, count);
+        }
+        assertTrue(Arrays.equals(expected, bulkRead.toByteArray()));
+    }
+
+    public void test_WritableByteChannel_output() {
+        Transform transform = registry.get(new PayloadSpec("java.lang.String"), new PayloadSpec("urn:a:channel"));
+
+        assertEquals("abc", new String((byte[]) transform.execute("abc")));
+    }
+
+    public void test_output_buffer_reuse() {
+        Transform transform = registry.get(new PayloadSpec("urn:a:stream"), new PayloadSpec("urn:a:bytes"));
+        StringBuilder large = new StringBuilder();
+
+        while(large.length() < OutputBuffers.MAX_RETAINED_CAPACITY * 2) {
+            large.append("0123456789");
+        }
+
+        assertEquals("abc", new String((byte[]) transform.execute("abc")));
+        assertEquals(large.length(), ((byte[]) transform.execute(large.toString())).length);
+        assertEquals("de", new String((byte[]) transform.execute("de")));
+        assertEquals("fgh", new String((byte[]) transform.execute("fgh")));
+    }
+
+    public void test_memoize() {
+        CountingTransforms transforms = new CountingTransforms();
+        registry.add(transforms);
+
+        PayloadSpecTransform transform = (PayloadSpecTransform) registry.get(new PayloadSpec("urn:a:counting"), new PayloadSpec("java.lang.String"));
+        TransformResultCache cache = transform.getResultCache();
+
+        assertEquals("a", transform.execute("a"));
+        assertEquals("a", transform.execute("a"));
+        assertEquals(1, transforms.count);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // byte[] payloads are compared by value...
+        transform.execute(new byte[] {'b'});
+        transform.execute(new byte[] {'b'});
+        assertEquals(2, transforms.count);
+
+        // Evicts LRU "a"...
+        transform.execute("c");
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        transform.execute("a");
+        assertEquals(4, transforms.count);
+
+        // Streams are not cached...
+        transform.execute(new ByteArrayInputStream(new byte[] {'d'}));
+        transform.execute(new ByteArrayInputStream(new byte[] {'d'}));
+        assertEquals(6, transforms.count);
+    }
+
+    public void test_memoize_mutable_result() {
+        try {
+            registry.add(new MutableResultTransforms());
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Unsupported @Memoize result type 'java.lang.StringBuilder' on transform method"));
+        }
+    }
+
+    public static class MutableResultTransforms {
+
+        @Memoize
+        public StringBuilder read(@From("urn:a:mutable") String payload) {
+            return new StringBuilder(payload);
+        }
+    }
+
+    public static class CountingTransforms {
+
+        private int count;
+
+        @Memoize(maxEntries = 2)
+        public String read(@From("urn:a:counting") Object payload) throws IOException {
+            count++;
+            if(payload instanceof byte[]) {
+                return new String((byte[]) payload);
+            } else if(payload instanceof InputStream) {
+                return String.valueOf((char) ((InputStream) payload).read());
+            }
+            return payload.toString();
+        }
+    }
+
+    public static class StreamTransforms {
+
+        public String read(@From("urn:a:reader") Reader reader) throws IOException {
+            return new BufferedReader(reader).readLine();
+        }
+
+        public void copy(@From("urn:a:stream") InputStream in, @To("urn:a:bytes") OutputStream out) throws IOException {
+            int b;
+            while((b = in.read()) != -1) {
+                out.write(b);
+            }
+        }
+
+        public void write(@From String in, @To("urn:a:channel") WritableByteChannel out) throws IOException {
+            out.write(ByteBuffer.wrap(in.getBytes("UTF-8")));
+        }
+    }
+}
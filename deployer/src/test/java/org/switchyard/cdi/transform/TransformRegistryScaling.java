@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import org.junit.Assert;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic {@link TransformRegistry} deployments, for the scaling tests.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public final class TransformRegistryScaling {
+
+    private TransformRegistryScaling() {
+    }
+
+    /**
+     * Register a transform per service in one batch, and then look each of them up.
+     * @param specPrefix Unique payload spec prefix.
+     * @param serviceCount The number of services.
+     * @param transformerClass Transformer class with a single arg "transform" method.
+     */
+    public static void registerAndLookup(String specPrefix, int serviceCount, Class<?> transformerClass) {
+        try {
+            Object transformer = transformerClass.newInstance();
+            Method method = transformerClass.getMethod("transform", String.class);
+            TransformRegistry registry = new TransformRegistry();
+            List<PayloadSpecTransform> transforms = new ArrayList<PayloadSpecTransform>(serviceCount);
+            PayloadSpec[] fromSpecs = new PayloadSpec[serviceCount];
+            PayloadSpec[] toSpecs = new PayloadSpec[serviceCount];
+
+            for(int i = 0; i < serviceCount; i++) {
+                fromSpecs[i] = new PayloadSpec(specPrefix + ":" + i + ":in");
+                toSpecs[i] = new PayloadSpec(specPrefix + ":" + i + ":out");
+                transforms.add(new PayloadSpecTransform(fromSpecs[i], toSpecs[i], transformer, method));
+            }
+            registry.add(transforms);
+
+            for(int i = 0; i < serviceCount; i++) {
+                Assert.assertNotNull(registry.get(fromSpecs[i], toSpecs[i]));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Unexpected Exception.  Failed to create synthetic deployment.", e);
+        }
+    }
+}
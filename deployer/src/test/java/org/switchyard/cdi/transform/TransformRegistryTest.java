@@ -0,0 +1,290 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import junit.framework.TestCase;
+import org.switchyard.cdi.BeanReference;
+import org.switchyard.cdi.metrics.MetricsRegistry;
+import org.switchyard.cdi.metrics.TransformMetrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class TransformRegistryTest extends TestCase {
+
+    private static final PayloadSpec XML_V1 = new PayloadSpec("urn:item:v1:xml");
+    private static final PayloadSpec XML_V2 = new PayloadSpec("urn:item:v2:xml");
+    private static final PayloadSpec ITEM = PayloadSpec.toPayloadSpec(Item.class);
+
+    public void test_get() {
+        TransformRegistry registry = new TransformRegistry();
+
+        registry.add(new ItemTransforms());
+        assertNotNull(registry.get(XML_V1, ITEM));
+        assertNotNull(registry.get(ITEM, XML_V1));
+        assertNull(registry.get(XML_V1, XML_V1));
+        assertNull(registry.get(new PayloadSpec("urn:unknown"), ITEM));
+    }
+
+    public void test_addAll() {
+        TransformRegistry registry = new TransformRegistry();
+
+        registry.addAll(Arrays.asList(new ItemTransforms(), new ItemV2Transforms()));
+        assertNotNull(registry.get(XML_V1, ITEM));
+        assertNotNull(registry.get(XML_V1, XML_V2));
+    }
+
+    public void test_addTransforms() throws NoSuchMethodException {
+        TransformRegistry registry = new TransformRegistry();
+        ItemTransforms transformer = new ItemTransforms();
+
+        registry.addTransforms(Arrays.asList(
+                new PayloadSpecTransform(XML_V1, ITEM, transformer, ItemTransforms.class.getMethod("readXML", String.class)),
+                new PayloadSpecTransform(ITEM, XML_V2, transformer, ItemTransforms.class.getMethod("writeXML", Item.class, Writer.class))));
+        assertEquals(1, registry.getVersion());
+        assertNotNull(registry.get(XML_V1, ITEM));
+        assertNotNull(registry.get(XML_V1, XML_V2));
+    }
+
+    public void test_void_single_arg() {
+        TransformRegistry registry = new TransformRegistry();
+
+        // Not a transform... no output...
+        registry.add(new ItemListener());
+        assertEquals(0, registry.getVersion());
+        assertNull(registry.get(XML_V1, PayloadSpec.toPayloadSpec(void.class)));
+    }
+
+    public void test_unsupported_to_type() {
+        TransformRegistry registry = new TransformRegistry();
+
+        try {
+            registry.add(new ItemStringBuilderTransforms());
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Unsupported @To parameter type 'java.lang.StringBuilder' on transform method"));
+        }
+        assertEquals(0, registry.getVersion());
+    }
+
+    public void test_unsupported_from_type() {
+        TransformRegistry registry = new TransformRegistry();
+
+        try {
+            registry.add(new ItemWriterFromTransforms());
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Unsupported @From parameter type 'java.io.Writer' on transform method"));
+        }
+    }
+
+    public void test_many_transforms_from_spec() throws NoSuchMethodException {
+        TransformRegistry registry = new TransformRegistry();
+        ItemTransforms transformer = new ItemTransforms();
+        Method readXML = ItemTransforms.class.getMethod("readXML", String.class);
+        PayloadSpec from = PayloadSpec.declare("urn:item:many");
+        List<PayloadSpecTransform> transforms = new ArrayList<PayloadSpecTransform>();
+
+        for(int i = 0; i < 20; i++) {
+            transforms.add(new PayloadSpecTransform(from, PayloadSpec.declare("urn:item:many:" + i), transformer, readXML));
+        }
+
+        // Registered out of 'to' id order, over two batches...
+        Collections.shuffle(transforms, new Random(1));
+        registry.addTransforms(transforms.subList(0, 10));
+        registry.addTransforms(transforms.subList(10, 20));
+        for(int i = 0; i < 20; i++) {
+            PayloadSpec to = new PayloadSpec("urn:item:many:" + i);
+            assertEquals(to, ((PayloadSpecTransform) registry.get(from, to)).getTo());
+        }
+        assertNull(registry.get(from, XML_V1));
+        assertEquals(20, registry.getTransformMetrics().size());
+    }
+
+    public void test_undeclared_specs() {
+        TransformRegistry registry = new TransformRegistry();
+
+        registry.add(new ItemTransforms());
+
+        int declaredCount = PayloadSpec.getDeclaredCount();
+        for(int i = 0; i < 100; i++) {
+            PayloadSpec consumerSpec = PayloadSpec.valueOf("urn:consumer:" + i);
+            assertNull(registry.get(consumerSpec, ITEM));
+            assertNull(registry.get(ITEM, consumerSpec));
+            assertEquals("<item>a</item>", registry.transformObject("<item>a</item>", consumerSpec, XML_V1));
+        }
+        // Consumer supplied specs are not declared...
+        assertEquals(declaredCount, PayloadSpec.getDeclaredCount());
+
+        // Undeclared instances of declared specs still resolve...
+        assertNotNull(registry.get(new PayloadSpec("urn:item:v1:xml"), PayloadSpec.valueOf(Item.class.getName())));
+    }
+
+    public void test_bean_reference() {
+        TransformRegistry registry = new TransformRegistry();
+        ItemTransforms transforms = new ItemTransforms();
+
+        registry.add(new BeanReference(transforms));
+
+        PayloadSpecTransform transform = (PayloadSpecTransform) registry.get(XML_V1, ITEM);
+        assertSame(transforms, transform.getTransformer());
+        assertEquals("a", ((Item) transform.execute("<item>a</item>")).name);
+    }
+
+    public void test_duplicate() {
+        TransformRegistry registry = new TransformRegistry();
+
+        registry.add(new ItemTransforms());
+        try {
+            registry.add(new ItemTransforms());
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Duplicate transform specification for 'urn:item:v1:xml' to '" + Item.class.getName() + "'.", e.getMessage());
+        }
+    }
+
+    public void test_transformObject() {
+        TransformRegistry registry = new TransformRegistry();
+
+        registry.add(new ItemTransforms());
+
+        Item item = (Item) registry.transformObject("<item>a</item>", XML_V1, ITEM);
+        assertEquals("a", item.name);
+        assertEquals("<item>a</item>", registry.transformObject(item, XML_V1));
+    }
+
+    public void test_chained() {
+        TransformRegistry registry = new TransformRegistry();
+
+        registry.add(new ItemTransforms());
+        assertNull(registry.get(XML_V1, XML_V2));
+
+        registry.add(new ItemV2Transforms());
+        Transform chain = registry.get(XML_V1, XML_V2);
+        assertTrue(chain instanceof ChainedTransform);
+        assertEquals(2, ((ChainedTransform) chain).getSteps().length);
+        assertSame(chain, registry.get(XML_V1, XML_V2));
+        assertEquals("<item version=\"2\">a</item>", registry.transformObject("<item>a</item>", XML_V1, XML_V2));
+
+        // Direct transforms are not chained...
+        assertTrue(registry.get(XML_V1, ITEM) instanceof PayloadSpecTransform);
+        // Unreachable...
+        assertNull(registry.get(XML_V2, XML_V1));
+    }
+
+    public void test_metrics() {
+        TransformRegistry registry = new TransformRegistry();
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+        registry.add(new ItemTransforms());
+        registry.setMetricsRegistry(metricsRegistry);
+        registry.add(new ItemV2Transforms());
+        assertEquals(3, metricsRegistry.getTransformMetrics().size());
+
+        // Chains record against their steps...
+        registry.transformObject("<item>a</item>", XML_V1, XML_V2);
+        registry.transformObject("<item>b</item>", XML_V1, ITEM);
+        // Fails...
+        assertNull(registry.transformObject("x", XML_V1, ITEM));
+
+        TransformMetrics readMetrics = registry.getTransformMetrics(XML_V1, ITEM);
+        assertEquals("urn:item:v1:xml", readMetrics.getFrom());
+        assertEquals(Item.class.getName(), readMetrics.getTo());
+        assertEquals(ItemTransforms.class.getName() + "#readXML", readMetrics.getTransformer());
+        assertEquals(3, readMetrics.getInvocationCount());
+        assertEquals(1, readMetrics.getFailureCount());
+        assertEquals(29, readMetrics.getTotalInputSize());
+        // Item outputs have no size...
+        assertEquals(0, readMetrics.getTotalOutputSize());
+
+        TransformMetrics writeMetrics = registry.getTransformMetrics(ITEM, XML_V2);
+        assertEquals(1, writeMetrics.getInvocationCount());
+        assertEquals(0, writeMetrics.getFailureCount());
+        assertEquals("<item version=\"2\">a</item>".length(), writeMetrics.getTotalOutputSize());
+        assertEquals(0, registry.getTransformMetrics(ITEM, XML_V1).getInvocationCount());
+
+        // Not direct...
+        assertNull(registry.getTransformMetrics(XML_V1, XML_V2));
+
+        List<TransformMetrics> allMetrics = registry.getTransformMetrics();
+        assertEquals(3, allMetrics.size());
+        for(int i = 1; i < allMetrics.size(); i++) {
+            assertTrue(allMetrics.get(i - 1).getTotalLatency() >= allMetrics.get(i).getTotalLatency());
+        }
+    }
+
+    public static class Item {
+        public String name;
+
+        public Item(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class ItemTransforms {
+
+        public Item readXML(@From("urn:item:v1:xml") String xml) {
+            return new Item(xml.substring("<item>".length(), xml.length() - "</item>".length()));
+        }
+
+        public void writeXML(@From Item item, @To("urn:item:v1:xml") Writer writer) throws IOException {
+            writer.write("<item>" + item.name + "</item>");
+        }
+    }
+
+    public static class ItemListener {
+
+        public void itemRead(@From("urn:item:v1:xml") String xml) {
+        }
+    }
+
+    public static class ItemStringBuilderTransforms {
+
+        public void writeXML(@From Item item, @To("urn:item:v1:xml") StringBuilder builder) {
+            builder.append("<item>").append(item.name).append("</item>");
+        }
+    }
+
+    public static class ItemWriterFromTransforms {
+
+        public Item readXML(@From("urn:item:v1:xml") Writer writer) {
+            return null;
+        }
+    }
+
+    public static class ItemV2Transforms {
+
+        public void writeXML(@From Item item, @To("urn:item:v2:xml") Writer writer) throws IOException {
+            writer.write("<item version=\"2\">" + item.name + "</item>");
+        }
+    }
+}
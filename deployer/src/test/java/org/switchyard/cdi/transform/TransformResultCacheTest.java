@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class TransformResultCacheTest extends TestCase {
+
+    public void test_keys() {
+        TransformResultCache cache = new TransformResultCache(100, 1024 * 1024);
+
+        assertEquals("a", cache.toKey("a"));
+        assertEquals(Integer.valueOf(1), cache.toKey(1));
+        assertEquals(cache.toKey(new byte[] {1, 2}), cache.toKey(new byte[] {1, 2}));
+        assertEquals(cache.toKey(new char[] {'a'}), cache.toKey(new char[] {'a'}));
+
+        // Mutable value types are not used as keys...
+        assertNull(cache.toKey(new ArrayList<String>(Arrays.asList("a"))));
+        assertNull(cache.toKey(new StringBuilder("a")));
+        assertNull(cache.toKey(null));
+    }
+
+    public void test_large_keys() {
+        TransformResultCache cache = new TransformResultCache(100, 1024 * 1024, 8);
+
+        assertNotNull(cache.toKey(new byte[8]));
+        assertNotNull(cache.toKey(new char[4]));
+        assertNotNull(cache.toKey("abcd"));
+
+        // Too large to hash and copy...
+        assertNull(cache.toKey(new byte[9]));
+        assertNull(cache.toKey(new char[5]));
+        assertNull(cache.toKey("abcde"));
+    }
+
+    public void test_cacheable_result_types() {
+        assertTrue(TransformResultCache.isCacheableResultType(String.class));
+        assertTrue(TransformResultCache.isCacheableResultType(int.class));
+        assertTrue(TransformResultCache.isCacheableResultType(Long.class));
+        assertTrue(TransformResultCache.isCacheableResultType(byte[].class));
+        assertTrue(TransformResultCache.isCacheableResultType(char[].class));
+
+        assertFalse(TransformResultCache.isCacheableResultType(Object.class));
+        assertFalse(TransformResultCache.isCacheableResultType(StringBuilder.class));
+        assertFalse(TransformResultCache.isCacheableResultType(int[].class));
+    }
+
+    public void test_payload_key_copied() {
+        TransformResultCache cache = new TransformResultCache(100, 1024 * 1024);
+        byte[] payload = new byte[] {1, 2};
+
+        cache.put(cache.toKey(payload), "12");
+        payload[0] = 9;
+        assertNull(cache.get(cache.toKey(payload)));
+        assertEquals("12", cache.get(cache.toKey(new byte[] {1, 2})));
+    }
+
+    public void test_array_results_copied() {
+        TransformResultCache cache = new TransformResultCache(100, 1024 * 1024);
+        byte[] result = new byte[] {'a', 'b'};
+
+        cache.put("ab", result);
+        result[0] = 'x';
+
+        byte[] cached = (byte[]) cache.get("ab");
+        assertEquals("ab", new String(cached));
+        cached[1] = 'x';
+        assertEquals("ab", new String((byte[]) cache.get("ab")));
+        assertNotSame(cache.get("ab"), cache.get("ab"));
+    }
+
+    public void test_bounds() {
+        TransformResultCache cache = new TransformResultCache(1000, 1024 * 1024);
+
+        for(int i = 0; i < 10000; i++) {
+            cache.put(cache.toKey(i), "result-" + i);
+        }
+        assertTrue(cache.getSize() <= 1000);
+        assertTrue(cache.getSize() > 500);
+        assertEquals(10000 - cache.getSize(), cache.getEvictionCount());
+
+        cache = new TransformResultCache(1000, 10 * 1024);
+        for(int i = 0; i < 10000; i++) {
+            cache.put(cache.toKey(i), "result-" + i);
+        }
+        assertTrue(cache.getBytes() <= 10 * 1024);
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+
+    public void test_concurrent() throws Exception {
+        final TransformResultCache cache = new TransformResultCache(1000, 1024 * 1024);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for(int i = 0; i < 20000; i++) {
+                            String key = Integer.toString(i % 2000);
+                            Object result = cache.get(key);
+
+                            if(result == null) {
+                                cache.put(key, "result-" + key);
+                            } else if(!result.equals("result-" + key)) {
+                                throw new AssertionError("Wrong result '" + result + "' for '" + key + "'.");
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(80000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getSize() <= 1000);
+    }
+}
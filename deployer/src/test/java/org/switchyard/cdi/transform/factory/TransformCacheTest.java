@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.transform.factory;
+
+import junit.framework.TestCase;
+import org.switchyard.cdi.transform.PayloadSpec;
+import org.switchyard.cdi.transform.Transform;
+import org.switchyard.cdi.transform.TransformRegistry;
+import org.switchyard.cdi.transform.TransformRegistryTest;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class TransformCacheTest extends TestCase {
+
+    private static final PayloadSpec ITEM = PayloadSpec.toPayloadSpec(TransformRegistryTest.Item.class);
+    private static final PayloadSpec XML_V1 = PayloadSpec.declare("urn:item:v1:xml");
+    private static final PayloadSpec XML_V2 = PayloadSpec.declare("urn:item:v2:xml");
+
+    public void test_hits_and_misses_cached() {
+        CountingRegistry registry = new CountingRegistry();
+        TransformCache cache = TransformCache.from(registry, ITEM, "test");
+
+        registry.add(new TransformRegistryTest.ItemTransforms());
+
+        Transform transform = cache.get(XML_V1);
+        assertNotNull(transform);
+        assertSame(transform, cache.get(XML_V1));
+        assertNull(cache.get(XML_V2));
+        assertNull(cache.get(XML_V2));
+        assertNull(cache.get(ITEM));
+        assertEquals(2, registry.lookups);
+    }
+
+    public void test_invalidated_on_registration() {
+        CountingRegistry registry = new CountingRegistry();
+        TransformCache cache = TransformCache.to(registry, XML_V2, "test");
+
+        registry.add(new TransformRegistryTest.ItemTransforms());
+        assertNull(cache.get(ITEM));
+
+        // Registered after the miss was cached...
+        registry.add(new TransformRegistryTest.ItemV2Transforms());
+        assertNotNull(cache.get(ITEM));
+        // Chained...
+        assertNotNull(cache.get(XML_V1));
+        assertEquals(3, registry.lookups);
+    }
+
+    public void test_undeclared_not_cached() {
+        CountingRegistry registry = new CountingRegistry();
+        TransformCache cache = TransformCache.from(registry, ITEM, "test");
+        PayloadSpec undeclared = PayloadSpec.valueOf("urn:consumer:" + System.nanoTime());
+
+        registry.add(new TransformRegistryTest.ItemTransforms());
+        assertNull(cache.get(undeclared));
+        assertNull(cache.get(undeclared));
+        assertEquals(2, registry.lookups);
+    }
+
+    private static class CountingRegistry extends TransformRegistry {
+
+        private int lookups;
+
+        @Override
+        public Transform get(PayloadSpec from, PayloadSpec to) {
+            lookups++;
+            return super.get(from, to);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Build-time deployment index processor.
+ * <p/>
+ * Writes a {@link #INDEX_RESOURCE} index of the {@code @Service} beans, their operations,
+ * the {@code @TransformSpecifier} transform methods and the {@code @Service} client injection
+ * points of the compiled classes.  The deployer reads the index at boot, instead of reflecting
+ * over every bean.  Records are tab separated, one per line:
+ * <pre>
+ * service     &lt;class&gt;  &lt;service name&gt;
+ * operation   &lt;class&gt;  &lt;method&gt;  &lt;param types&gt;
+ * transformer &lt;class&gt;
+ * transform   &lt;class&gt;  &lt;method&gt;  &lt;param types&gt;  &lt;from spec&gt;  &lt;to spec&gt;
+ * client      &lt;class&gt;  &lt;field&gt;   &lt;field type&gt;   &lt;service name&gt;
+ * </pre>
+ * Class names are binary names, as returned by {@link Class#getName()}, and param types are
+ * comma separated.  On incremental builds, the records of classes not in the build are
+ * carried over from the existing index.  The processor runs on every class, so that a class
+ * dropping its annotations also drops its records.
+ *
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+@SupportedAnnotationTypes("*")
+public class DeploymentIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_RESOURCE = "META-INF/switchyard-cdi.idx";
+    public static final String INDEX_HEADER = "# SwitchYard CDI deployment index v1";
+
+    static final String SERVICE = "org.switchyard.cdi.Service";
+    static final String TRANSFORM_SPECIFIER = "org.switchyard.cdi.transform.TransformSpecifier";
+    static final String FROM = "org.switchyard.cdi.transform.From";
+    static final String TO = "org.switchyard.cdi.transform.To";
+
+    /**
+     * Index records, keyed by the class they describe.
+     */
+    private final Map<String, List<String>> records = new LinkedHashMap<String, List<String>>();
+    private final Set<String> processedClasses = new HashSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for(Element root : roundEnv.getRootElements()) {
+            if(root instanceof TypeElement) {
+                processType((TypeElement) root);
+            }
+        }
+
+        if(roundEnv.processingOver()) {
+            writeIndex();
+        }
+
+        // Don't claim the annotations...
+        return false;
+    }
+
+    private void processType(TypeElement type) {
+        String className = toClassName(type);
+
+        processedClasses.add(className);
+        records.remove(className);
+
+        AnnotationMirror service = getAnnotation(type, SERVICE);
+        if(service != null) {
+            addRecord(className, "service", className, toServiceName(service, type));
+            for(ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+                if(isOperation(method)) {
+                    addRecord(className, "operation", className, method.getSimpleName().toString(), toParamTypes(method));
+                }
+            }
+        }
+
+        if(getAnnotation(type, TRANSFORM_SPECIFIER) != null) {
+            addRecord(className, "transformer", className);
+            for(ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+                addTransformRecord(className, method);
+            }
+        }
+
+        for(VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            AnnotationMirror clientService = getAnnotation(field, SERVICE);
+            if(clientService != null && isInterface(field.asType())) {
+                addRecord(className, "client", className, field.getSimpleName().toString(), toClassName(field.asType()), toServiceName(clientService, processingEnv.getTypeUtils().asElement(field.asType())));
+            }
+        }
+
+        // Nested classes...
+        for(TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            processType(nested);
+        }
+    }
+
+    private void addTransformRecord(String className, ExecutableElement method) {
+        if(!method.getModifiers().contains(Modifier.PUBLIC) || isObjectMethod(method)) {
+            return;
+        }
+
+        List<? extends VariableElement> params = method.getParameters();
+        if(params.isEmpty()) {
+            return;
+        }
+
+        AnnotationMirror from = getAnnotation(params.get(0), FROM);
+        if(from == null) {
+            // Not a transform method...
+            return;
+        }
+
+        String fromSpec = toPayloadSpec(from, params.get(0).asType());
+        String toSpec;
+        if(params.size() == 2) {
+            AnnotationMirror to = getAnnotation(params.get(1), TO);
+            if(to == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Transform method specifies a @From, but no @To on the second parameter.", method);
+                return;
+            }
+            toSpec = toPayloadSpec(to, params.get(1).asType());
+        } else if(params.size() == 1 && method.getReturnType().getKind() != TypeKind.VOID) {
+            toSpec = toClassName(method.getReturnType());
+        } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Transform method specifies a @From, but no @To.", method);
+            return;
+        }
+
+        addRecord(className, "transform", className, method.getSimpleName().toString(), toParamTypes(method), fromSpec, toSpec);
+    }
+
+    private boolean isOperation(ExecutableElement method) {
+        return method.getModifiers().contains(Modifier.PUBLIC) && !isObjectMethod(method);
+    }
+
+    private boolean isObjectMethod(ExecutableElement method) {
+        return ((TypeElement) method.getEnclosingElement()).getQualifiedName().contentEquals("java.lang.Object");
+    }
+
+    private boolean isInterface(TypeMirror type) {
+        Element element = processingEnv.getTypeUtils().asElement(type);
+        return (element != null && element.getKind() == ElementKind.INTERFACE);
+    }
+
+    private String toServiceName(AnnotationMirror service, Element defaultNameElement) {
+        String name = getValue(service);
+
+        if(name.equals("") && defaultNameElement != null) {
+            return defaultNameElement.getSimpleName().toString();
+        }
+        return name;
+    }
+
+    private String toPayloadSpec(AnnotationMirror specAnnotation, TypeMirror type) {
+        String spec = getValue(specAnnotation);
+
+        if(spec.equals("")) {
+            // Default mime type to Java...
+            return toClassName(type);
+        }
+        return spec;
+    }
+
+    private String toParamTypes(ExecutableElement method) {
+        StringBuilder paramTypes = new StringBuilder();
+
+        for(VariableElement param : method.getParameters()) {
+            if(paramTypes.length() > 0) {
+                paramTypes.append(',');
+            }
+            paramTypes.append(toClassName(param.asType()));
+        }
+
+        return paramTypes.toString();
+    }
+
+    private String toClassName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    /**
+     * Get the {@link Class#getName()} form of the erasure of the supplied type.
+     */
+    private String toClassName(TypeMirror type) {
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+
+        if(erasure.getKind().isPrimitive()) {
+            return erasure.toString();
+        } else if(erasure.getKind() == TypeKind.ARRAY) {
+            return "[" + toDescriptor(((ArrayType) erasure).getComponentType());
+        } else if(erasure.getKind() == TypeKind.DECLARED) {
+            return toClassName((TypeElement) ((DeclaredType) erasure).asElement());
+        }
+        return erasure.toString();
+    }
+
+    private String toDescriptor(TypeMirror type) {
+        switch(type.getKind()) {
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case CHAR: return "C";
+            case SHORT: return "S";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case ARRAY: return "[" + toDescriptor(((ArrayType) type).getComponentType());
+            default: return "L" + toClassName(type) + ";";
+        }
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationType) {
+        for(AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationElement = (TypeElement) annotation.getAnnotationType().asElement();
+            if(annotationElement.getQualifiedName().contentEquals(annotationType)) {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private String getValue(AnnotationMirror annotation) {
+        for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if(entry.getKey().getSimpleName().contentEquals("value")) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+
+        return "";
+    }
+
+    private void addRecord(String className, String... fields) {
+        List<String> classRecords = records.get(className);
+        StringBuilder record = new StringBuilder();
+
+        if(classRecords == null) {
+            classRecords = new ArrayList<String>();
+            records.put(className, classRecords);
+        }
+
+        for(int i = 0; i < fields.length; i++) {
+            if(i > 0) {
+                record.append('\t');
+            }
+            record.append(fields[i]);
+        }
+        classRecords.add(record.toString());
+    }
+
+    private void writeIndex() {
+        Map<String, List<String>> allRecords = readExistingIndex();
+
+        allRecords.putAll(records);
+
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            Writer writer = new OutputStreamWriter(index.openOutputStream(), "UTF-8");
+
+            try {
+                writer.write(INDEX_HEADER);
+                writer.write('\n');
+                for(List<String> classRecords : allRecords.values()) {
+                    for(String record : classRecords) {
+                        writer.write(record);
+                        writer.write('\n');
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write deployment index '" + INDEX_RESOURCE + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read the records of the classes that were not part of this build, from the existing index.
+     */
+    private Map<String, List<String>> readExistingIndex() {
+        Map<String, List<String>> existingRecords = new LinkedHashMap<String, List<String>>();
+
+        try {
+            FileObject index = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(index.openInputStream(), "UTF-8"));
+
+            try {
+                String record;
+                while((record = reader.readLine()) != null) {
+                    String[] fields = record.split("\t");
+
+                    if(record.startsWith("#") || fields.length < 2 || processedClasses.contains(fields[1])) {
+                        continue;
+                    }
+                    // Drop the records of deleted classes...
+                    if(processingEnv.getElementUtils().getTypeElement(fields[1].replace('$', '.')) == null) {
+                        continue;
+                    }
+
+                    List<String> classRecords = existingRecords.get(fields[1]);
+                    if(classRecords == null) {
+                        classRecords = new ArrayList<String>();
+                        existingRecords.put(fields[1], classRecords);
+                    }
+                    classRecords.add(record);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // No existing index...
+        } catch (IllegalArgumentException e) {
+            // No existing index...
+        }
+
+        return existingRecords;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.switchyard.cdi.processor;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
+ */
+public class DeploymentIndexProcessorTest {
+
+    private File outputDir;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = File.createTempFile("index", "");
+        outputDir.delete();
+        outputDir.mkdirs();
+    }
+
+    @Test
+    public void test_index() throws IOException {
+        compile(
+            source("org.switchyard.cdi.Service", "package org.switchyard.cdi; public @interface Service { String value() default \"\"; }"),
+            source("org.switchyard.cdi.transform.TransformSpecifier", "package org.switchyard.cdi.transform; public @interface TransformSpecifier {}"),
+            source("org.switchyard.cdi.transform.From", "package org.switchyard.cdi.transform; public @interface From { String value() default \"\"; }"),
+            source("org.switchyard.cdi.transform.To", "package org.switchyard.cdi.transform; public @interface To { String value() default \"\"; }"),
+            source("app.Product", "package app; public class Product {}"),
+            source("app.ProductService", "package app; public interface ProductService { Product getProduct(String id); }"),
+            source("app.ProductServiceImpl", "package app; @org.switchyard.cdi.Service(\"ProductService\") public class ProductServiceImpl implements ProductService { public Product getProduct(String id) { return null; } }"),
+            source("app.ProductClient", "package app; public class ProductClient { @org.switchyard.cdi.Service ProductService productService; }"),
+            source("app.ProductTransforms", "package app; import org.switchyard.cdi.transform.*; @TransformSpecifier public class ProductTransforms {"
+                    + " public Product read(@From(\"urn:product\") String xml) { return null; }"
+                    + " public void write(@From Product product, @To(\"urn:product\") java.io.Writer xml) {}"
+                    + " public byte[] notATransform(byte[] bytes) { return bytes; } }")
+        );
+
+        List<String> index = readIndex();
+
+        Assert.assertEquals(DeploymentIndexProcessor.INDEX_HEADER, index.get(0));
+        Assert.assertTrue(index.contains("service\tapp.ProductServiceImpl\tProductService"));
+        Assert.assertTrue(index.contains("operation\tapp.ProductServiceImpl\tgetProduct\tjava.lang.String"));
+        Assert.assertTrue(index.contains("transformer\tapp.ProductTransforms"));
+        Assert.assertTrue(index.contains("transform\tapp.ProductTransforms\tread\tjava.lang.String\turn:product\tapp.Product"));
+        Assert.assertTrue(index.contains("transform\tapp.ProductTransforms\twrite\tapp.Product,java.io.Writer\tapp.Product\turn:product"));
+        Assert.assertTrue(index.contains("client\tapp.ProductClient\tproductService\tapp.ProductService\tProductService"));
+        Assert.assertEquals(7, index.size());
+    }
+
+    private void compile(JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+
+        try {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(outputDir));
+
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, null, null, Arrays.asList(sources));
+            task.setProcessors(Collections.singleton(new DeploymentIndexProcessor()));
+            Assert.assertTrue("Compilation failed.", task.call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private List<String> readIndex() throws IOException {
+        List<String> records = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(outputDir, DeploymentIndexProcessor.INDEX_RESOURCE)), "UTF-8"));
+
+        try {
+            String record;
+            while((record = reader.readLine()) != null) {
+                records.add(record);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return records;
+    }
+
+    private static JavaFileObject source(final String className, final String source) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+    }
+}